@@ -1,14 +1,22 @@
 package com.zxw.demo.action;
 
+import com.zxw.demo.model.User;
 import com.zxw.demo.service.IDemoService;
 import com.zxw.framework.annotation.Autowired;
+import com.zxw.framework.annotation.Coalesce;
 import com.zxw.framework.annotation.Controller;
+import com.zxw.framework.annotation.RequestBody;
 import com.zxw.framework.annotation.RequestMapping;
 import com.zxw.framework.annotation.RequestParam;
+import com.zxw.framework.annotation.Timeout;
+import com.zxw.framework.annotation.WarmUp;
+import com.zxw.framework.concurrent.Deadline;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 //虽然，用法一样，但是没有功能
 @Controller
@@ -18,6 +26,7 @@ public class DemoAction {
     @Autowired
     private IDemoService demoService;
     
+    @WarmUp
     @RequestMapping("/query")
     public void query(HttpServletRequest req, HttpServletResponse resp, @RequestParam("name") String name) {
         //		String result = demoService.get(name);
@@ -29,6 +38,7 @@ public class DemoAction {
         }
     }
     
+    @WarmUp
     @RequestMapping("/add")
     public void add(HttpServletResponse resp, @RequestParam("a") Integer a, @RequestParam("b") Integer b,
             HttpServletRequest req) {
@@ -39,6 +49,7 @@ public class DemoAction {
         }
     }
     
+    @WarmUp
     @RequestMapping("/sub")
     public void add(HttpServletRequest req, HttpServletResponse resp, @RequestParam("a") Double a,
             @RequestParam("b") Double b) {
@@ -49,6 +60,34 @@ public class DemoAction {
         }
     }
     
+    //同一时刻相同name的请求只会调用一次demoService
+    @WarmUp
+    @Coalesce
+    @RequestMapping("/get")
+    public String get(@RequestParam("name") String name) {
+        return demoService.get(name);
+    }
+    
+    //一行一条分块推给客户端，Accept: text/event-stream时按SSE推
+    @RequestMapping("/stream")
+    public Stream<String> stream(@RequestParam("n") Integer n) {
+        return IntStream.rangeClosed(1, n).mapToObj(i -> demoService.get("item-" + i));
+    }
+    
+    //POST {"name":"Tom","age":18,"tags":["a","b"]}
+    @RequestMapping("/user")
+    public String user(@RequestBody User user) {
+        return user.getName() + "," + user.getAge() + "," + user.getTags();
+    }
+    
+    //超过1秒中断并返回504，请求头X-Request-Timeout可以把期限再缩短
+    @Timeout(1000)
+    @RequestMapping("/slow")
+    public String slow(@RequestParam("ms") Integer ms, Deadline deadline) throws InterruptedException {
+        Thread.sleep(ms);
+        return "slept " + ms + "ms, " + deadline;
+    }
+    
     @RequestMapping("/remove")
     public String remove(@RequestParam("id") Integer id) {
         return "" + id;
@@ -0,0 +1,25 @@
+package com.zxw.demo.model;
+
+import java.util.List;
+
+//@RequestBody绑定的例子
+public class User {
+    
+    private String name;
+    
+    private int age;
+    
+    private List<String> tags;
+    
+    public String getName() {
+        return name;
+    }
+    
+    public int getAge() {
+        return age;
+    }
+    
+    public List<String> getTags() {
+        return tags;
+    }
+}
@@ -0,0 +1,18 @@
+package com.zxw.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 相同url、相同参数的并发请求合并成一次调用，结果分给所有等待的请求
+ * <p>只适合幂等、通过返回值输出结果的方法，方法参数里不能有request和response
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Coalesce {
+    
+    /**
+     * 等待正在执行的那次调用的最长时间，毫秒
+     */
+    long timeout() default 3000;
+}
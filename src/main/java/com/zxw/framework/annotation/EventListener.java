@@ -0,0 +1,17 @@
+package com.zxw.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Bean上只有一个参数的方法，参数类型就是要监听的事件类型，子类事件也会收到
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface EventListener {
+    
+    /**
+     * true表示放进RingBuffer由后台线程处理，发布方不等待
+     */
+    boolean async() default false;
+}
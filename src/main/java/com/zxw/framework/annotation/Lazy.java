@@ -0,0 +1,14 @@
+package com.zxw.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 第一次用到时才创建这个Bean，Controller的HandlerMapping也等第一个请求来了再生成
+ * <p>配置了lazy-init=true时所有Bean默认都是懒加载，可以用@Lazy(false)让个别Bean在启动时创建
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Lazy {
+    boolean value() default true;
+}
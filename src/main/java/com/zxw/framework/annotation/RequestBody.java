@@ -0,0 +1,17 @@
+package com.zxw.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 把请求体里的JSON绑定到这个参数上，支持POJO、只有全参构造器的不可变类、List、Map和数组
+ */
+@Target({ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RequestBody {
+    
+    /**
+     * 请求体为空时是否返回400，false就传null
+     */
+    boolean required() default true;
+}
@@ -0,0 +1,30 @@
+package com.zxw.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 定时执行Bean上的无参方法，cron、fixedRate、fixedDelay三选一
+ * <p>cron是6位：秒 分 时 日 月 周，例如 0 0/5 * * * ?
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Scheduled {
+    
+    String cron() default "";
+    
+    /**
+     * 按固定频率执行，毫秒；上一次还没执行完就跳过这一次
+     */
+    long fixedRate() default -1;
+    
+    /**
+     * 上一次执行完之后隔多久再执行，毫秒
+     */
+    long fixedDelay() default -1;
+    
+    /**
+     * 第一次执行前的延迟，毫秒，对cron无效
+     */
+    long initialDelay() default 0;
+}
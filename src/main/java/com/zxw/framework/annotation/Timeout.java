@@ -0,0 +1,17 @@
+package com.zxw.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 处理方法的超时时间，超时后中断执行线程并返回504，不写就用request.timeout.default
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Timeout {
+    
+    /**
+     * 毫秒，0表示不限制
+     */
+    long value();
+}
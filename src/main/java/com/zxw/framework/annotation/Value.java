@@ -0,0 +1,15 @@
+package com.zxw.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 注入配置项，写法和Spring一样：${key} 或者 ${key:默认值}
+ * <p>配置文件改动后会重新注入变化了的key
+ * <p>重新注入是在监听配置的线程上做的，字段必须声明成volatile，请求线程才能看到新值，否则创建Bean时报错
+ */
+@Target({ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Value {
+    String value();
+}
@@ -0,0 +1,13 @@
+package com.zxw.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 允许预热时用造出来的参数调用这个方法
+ * <p>预热会真正执行方法，只给没有副作用的方法加；没加的只有配置了warmup.fixture.url才会预热
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface WarmUp {
+}
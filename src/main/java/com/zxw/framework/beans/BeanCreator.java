@@ -0,0 +1,283 @@
+package com.zxw.framework.beans;
+
+import com.zxw.framework.annotation.Autowired;
+import com.zxw.framework.annotation.Value;
+import com.zxw.framework.config.ConfigSnapshot;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 每个Bean类只生成一次的创建器
+ * <p>构造器和@Autowired字段在第一次用到时解析成MethodHandle并缓存，
+ * 之后不管是启动还是再次创建实例，都不需要再getDeclaredFields、setAccessible
+ * <p>构造器选择规则：加了@Autowired的构造器 > 唯一的构造器 > 无参构造器
+ */
+public final class BeanCreator {
+
+    private static final ClassValue<BeanCreator> CREATORS = new ClassValue<BeanCreator>() {
+        @Override
+        protected BeanCreator computeValue(Class<?> type) {
+            return new BeanCreator(type);
+        }
+    };
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Class<?> beanClass;
+
+    //(Object[])Object，参数已经展开好了
+    private final MethodHandle constructor;
+
+    //构造器每个参数对应的beanName
+    private final String[] constructorDependencies;
+
+    private final FieldInjector[] fieldInjectors;
+
+    private final ValueInjector[] valueInjectors;
+
+    public static BeanCreator forClass(Class<?> beanClass) {
+        return CREATORS.get(beanClass);
+    }
+
+    private BeanCreator(Class<?> beanClass) {
+        this.beanClass = beanClass;
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        Constructor<?> ctor = determineConstructor(beanClass);
+        Class<?>[] paramTypes = ctor.getParameterTypes();
+        Annotation[][] pa = ctor.getParameterAnnotations();
+        constructorDependencies = new String[paramTypes.length];
+        for (int i = 0; i < paramTypes.length; i++) {
+            constructorDependencies[i] = resolveBeanName(findAutowired(pa[i]), paramTypes[i]);
+        }
+
+        List<FieldInjector> injectors = new ArrayList<FieldInjector>();
+        List<ValueInjector> values = new ArrayList<ValueInjector>();
+        try {
+            ctor.setAccessible(true);
+            constructor = lookup.unreflectConstructor(ctor)
+                    .asSpreader(Object[].class, paramTypes.length)
+                    .asType(CONSTRUCTOR_TYPE);
+
+            //父类上的@Autowired、@Value字段也要注入
+            for (Class<?> c = beanClass; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    Value value = field.getAnnotation(Value.class);
+                    if (value != null && !Modifier.isStatic(field.getModifiers())) {
+                        //配置刷新时是监听线程在写，请求线程要靠volatile才能看到新值
+                        if (!Modifier.isVolatile(field.getModifiers())) {
+                            throw new IllegalStateException("@Value field " + beanClass.getName() + "."
+                                    + field.getName() + " must be volatile");
+                        }
+                        field.setAccessible(true);
+                        MethodHandle setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+                        values.add(new ValueInjector(setter, value.value(), field.getType()));
+                        continue;
+                    }
+
+                    Autowired autowired = field.getAnnotation(Autowired.class);
+                    if (autowired == null || Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    //final字段也放行，非static的final字段在setAccessible之后可以拿到setter
+                    field.setAccessible(true);
+                    MethodHandle setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+                    injectors.add(new FieldInjector(setter, resolveBeanName(autowired, field.getType())));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot generate factory for " + beanClass.getName(), e);
+        }
+        fieldInjectors = injectors.toArray(new FieldInjector[injectors.size()]);
+        valueInjectors = values.toArray(new ValueInjector[values.size()]);
+    }
+
+    /**
+     * 构造器依赖，容器需要先把这些Bean创建出来
+     */
+    public String[] getConstructorDependencies() {
+        return constructorDependencies.clone();
+    }
+
+    /**
+     * 通过构造器创建实例，构造器参数从resolver中取
+     */
+    public Object newInstance(BeanResolver resolver) {
+        Object[] args = new Object[constructorDependencies.length];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = resolver.getBean(constructorDependencies[i]);
+        }
+        try {
+            return constructor.invokeExact(args);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to instantiate " + beanClass.getName(), t);
+        }
+    }
+
+    /**
+     * 字段注入，找不到依赖时和原来一样注入null
+     */
+    public void inject(Object bean, BeanResolver resolver) {
+        for (FieldInjector injector : fieldInjectors) {
+            try {
+                injector.setter.invokeExact(bean, resolver.getBean(injector.beanName));
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Failed to inject " + injector.beanName + " into "
+                        + beanClass.getName(), t);
+            }
+        }
+    }
+
+    /**
+     * 注入@Value字段
+     *
+     * @param changedKeys 只注入这些key对应的字段，null表示全部注入
+     */
+    public void injectValues(Object bean, ConfigSnapshot snapshot, Set<String> changedKeys) {
+        for (ValueInjector injector : valueInjectors) {
+            if (changedKeys != null && !changedKeys.contains(injector.key)) {
+                continue;
+            }
+            try {
+                injector.setter.invokeExact(bean, injector.resolve(snapshot));
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Failed to inject ${" + injector.key + "} into "
+                        + beanClass.getName(), t);
+            }
+        }
+    }
+
+    /**
+     * 检查快照里的值能不能注入到这个类的@Value字段上
+     *
+     * @throws IllegalArgumentException 缺少配置或者类型转换失败
+     */
+    public void validateValues(ConfigSnapshot snapshot) {
+        for (ValueInjector injector : valueInjectors) {
+            injector.resolve(snapshot);
+        }
+    }
+
+    public boolean hasValueInjectors() {
+        return valueInjectors.length > 0;
+    }
+
+    private static Constructor<?> determineConstructor(Class<?> beanClass) {
+        Constructor<?>[] ctors = beanClass.getDeclaredConstructors();
+        Constructor<?> candidate = null;
+        for (Constructor<?> ctor : ctors) {
+            if (!ctor.isAnnotationPresent(Autowired.class)) {
+                continue;
+            }
+            if (candidate != null) {
+                throw new IllegalStateException("More than one @Autowired constructor in " + beanClass.getName());
+            }
+            candidate = ctor;
+        }
+        if (candidate != null) {
+            return candidate;
+        }
+        if (ctors.length == 1) {
+            return ctors[0];
+        }
+        for (Constructor<?> ctor : ctors) {
+            if (ctor.getParameterTypes().length == 0) {
+                return ctor;
+            }
+        }
+        throw new IllegalStateException("No default or @Autowired constructor in " + beanClass.getName());
+    }
+
+    private static Autowired findAutowired(Annotation[] annotations) {
+        for (Annotation a : annotations) {
+            if (a instanceof Autowired) {
+                return (Autowired) a;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 没有自定义beanName，就用类型的全类名，和doInstance里注册接口的方式对应
+     */
+    private static String resolveBeanName(Autowired autowired, Class<?> type) {
+        String beanName = autowired == null ? "" : autowired.value().trim();
+        if ("".equals(beanName)) {
+            beanName = type.getName();
+        }
+        return beanName;
+    }
+
+    private static final class FieldInjector {
+
+        //(Object,Object)void
+        private final MethodHandle setter;
+
+        private final String beanName;
+
+        FieldInjector(MethodHandle setter, String beanName) {
+            this.setter = setter;
+            this.beanName = beanName;
+        }
+    }
+
+    private static final class ValueInjector {
+
+        //(Object,Object)void
+        private final MethodHandle setter;
+
+        private final String key;
+
+        private final String defaultValue;
+
+        private final Class<?> type;
+
+        ValueInjector(MethodHandle setter, String expression, Class<?> type) {
+            this.setter = setter;
+            this.type = type;
+            //${key:默认值}，不带${}的直接当成key
+            String text = expression.trim();
+            if (text.startsWith("${") && text.endsWith("}")) {
+                text = text.substring(2, text.length() - 1);
+            }
+            int colon = text.indexOf(':');
+            this.key = colon < 0 ? text : text.substring(0, colon);
+            this.defaultValue = colon < 0 ? null : text.substring(colon + 1);
+        }
+
+        Object resolve(ConfigSnapshot snapshot) {
+            String raw = snapshot.getProperty(key, defaultValue);
+            if (raw == null) {
+                throw new IllegalArgumentException("Missing config ${" + key + "}");
+            }
+            try {
+                return TypeConverter.convert(type, raw);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Config ${" + key + "}=" + raw + " is not a " + type.getSimpleName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.zxw.framework.beans;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 保存扫描出来的Bean的元信息，真正实例化交给BeanCreator
+ */
+public class BeanDefinition {
+    
+    private final String beanName;
+    
+    private final Class<?> beanClass;
+    
+    //别名，目前只有接口的全类名
+    private final List<String> aliases = new ArrayList<String>();
+    
+    //第一次getBean时才创建
+    private boolean lazyInit;
+    
+    public BeanDefinition(String beanName, Class<?> beanClass) {
+        this.beanName = beanName;
+        this.beanClass = beanClass;
+    }
+    
+    public String getBeanName() {
+        return beanName;
+    }
+    
+    public Class<?> getBeanClass() {
+        return beanClass;
+    }
+    
+    public List<String> getAliases() {
+        return Collections.unmodifiableList(aliases);
+    }
+    
+    public void addAlias(String alias) {
+        aliases.add(alias);
+    }
+    
+    public boolean isLazyInit() {
+        return lazyInit;
+    }
+    
+    public void setLazyInit(boolean lazyInit) {
+        this.lazyInit = lazyInit;
+    }
+}
@@ -0,0 +1,9 @@
+package com.zxw.framework.beans;
+
+/**
+ * 按beanName取依赖，由容器实现，BeanCreator创建和注入时回调
+ */
+public interface BeanResolver {
+    
+    Object getBean(String beanName);
+}
@@ -0,0 +1,46 @@
+package com.zxw.framework.beans;
+
+/**
+ * 配置文件、url传过来的参数都是String类型的，统一在这里转换成目标类型
+ */
+public final class TypeConverter {
+    
+    private TypeConverter() {
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Object convert(Class<?> type, String value) {
+        if (value == null || type == String.class || type == Object.class) {
+            return value;
+        }
+        String text = value.trim();
+        if (type == Integer.class || type == int.class) {
+            return Integer.valueOf(text);
+        } else if (type == Long.class || type == long.class) {
+            return Long.valueOf(text);
+        } else if (type == Double.class || type == double.class) {
+            return Double.valueOf(text);
+        } else if (type == Float.class || type == float.class) {
+            return Float.valueOf(text);
+        } else if (type == Short.class || type == short.class) {
+            return Short.valueOf(text);
+        } else if (type == Byte.class || type == byte.class) {
+            return Byte.valueOf(text);
+        } else if (type == Boolean.class || type == boolean.class) {
+            if ("true".equalsIgnoreCase(text)) {
+                return Boolean.TRUE;
+            } else if ("false".equalsIgnoreCase(text)) {
+                return Boolean.FALSE;
+            }
+            throw new IllegalArgumentException("Not a boolean: " + value);
+        } else if (type == Character.class || type == char.class) {
+            if (value.length() != 1) {
+                throw new IllegalArgumentException("Not a char: " + value);
+            }
+            return value.charAt(0);
+        } else if (type.isEnum()) {
+            return Enum.valueOf((Class<? extends Enum>) type, text);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,71 @@
+package com.zxw.framework.concurrent;
+
+import com.zxw.framework.logging.Logger;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * RingBuffer唯一的消费者，一次把已经发布的数据全部取出来交给EventHandler
+ * <p>halt之后会把已经发布的数据处理完再退出
+ */
+public final class BatchEventProcessor<E> implements Runnable {
+
+    private static final Logger logger = Logger.getLogger(BatchEventProcessor.class);
+
+    private final RingBuffer<E> ringBuffer;
+
+    private final EventHandler<? super E> handler;
+
+    private volatile boolean running = true;
+
+    private final BooleanSupplier halted = new BooleanSupplier() {
+        @Override
+        public boolean getAsBoolean() {
+            return !running;
+        }
+    };
+
+    public BatchEventProcessor(RingBuffer<E> ringBuffer, EventHandler<? super E> handler) {
+        this.ringBuffer = ringBuffer;
+        this.handler = handler;
+    }
+
+    @Override
+    public void run() {
+        long nextSequence = ringBuffer.getConsumerSequence().get() + 1;
+        while (true) {
+            long available;
+            try {
+                available = ringBuffer.getWaitStrategy().waitFor(nextSequence, ringBuffer.getCursor(), halted);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    available = ringBuffer.getCursor().get();
+                } else {
+                    continue;
+                }
+            }
+            long highest = ringBuffer.getHighestPublishedSequence(nextSequence, available);
+            if (highest < nextSequence) {
+                if (!running) {
+                    return;
+                }
+                continue;
+            }
+            for (long sequence = nextSequence; sequence <= highest; sequence++) {
+                try {
+                    handler.onEvent(ringBuffer.get(sequence), sequence, sequence == highest);
+                } catch (Throwable t) {
+                    logger.error("Event handler failed at sequence {}", sequence, t);
+                }
+            }
+            //这一批处理完才让出槽位
+            ringBuffer.getConsumerSequence().lazySet(highest);
+            nextSequence = highest + 1;
+        }
+    }
+
+    public void halt() {
+        running = false;
+        ringBuffer.getWaitStrategy().signalAllWhenBlocking();
+    }
+}
@@ -0,0 +1,128 @@
+package com.zxw.framework.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个请求剩下的时间预算
+ * <p>DispatcherServlet在调用处理方法前把它绑定到当前线程，处理方法可以直接声明Deadline参数，
+ * Service里用Deadline.current()，或者@Autowired注入requestScoped()，调用下游前看看还剩多少时间，
+ * 不够了就调用check()提前放弃
+ */
+public class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<Deadline>();
+
+    //没有期限
+    public static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+    private static final Deadline REQUEST_SCOPED = new RequestScopedDeadline();
+
+    //System.nanoTime()的值，NONE是Long.MAX_VALUE
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * timeout大到溢出时当成不限制
+     */
+    public static Deadline after(long timeout, TimeUnit unit) {
+        long now = System.nanoTime();
+        long nanos = unit.toNanos(timeout);
+        if (nanos > 0 && now + nanos < now) {
+            return NONE;
+        }
+        return new Deadline(now + nanos);
+    }
+
+    /**
+     * 当前线程上的期限，不在请求里返回NONE
+     */
+    public static Deadline current() {
+        Deadline deadline = CURRENT.get();
+        return deadline == null ? NONE : deadline;
+    }
+
+    /**
+     * 总是代理到当前线程上的期限，可以当成单例Bean注入到Service里
+     */
+    public static Deadline requestScoped() {
+        return REQUEST_SCOPED;
+    }
+
+    /**
+     * 绑定到当前线程
+     *
+     * @return 原来绑定的，处理完用restore还原
+     */
+    public static Deadline attach(Deadline deadline) {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(deadline);
+        return previous;
+    }
+
+    public static void restore(Deadline previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * 剩余时间，已经过期返回0或者负数
+     */
+    public long remaining(TimeUnit unit) {
+        if (deadlineNanos == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos != Long.MAX_VALUE && deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * @throws DeadlineExceededException 已经过期，或者当前线程被超时中断了
+     */
+    public void check() {
+        if (isExpired() || Thread.currentThread().isInterrupted()) {
+            throw new DeadlineExceededException("Deadline exceeded");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return deadlineNanos == Long.MAX_VALUE ? "Deadline[none]"
+                : "Deadline[" + remaining(TimeUnit.MILLISECONDS) + "ms]";
+    }
+
+    private static final class RequestScopedDeadline extends Deadline {
+
+        RequestScopedDeadline() {
+            super(Long.MAX_VALUE);
+        }
+
+        @Override
+        public long remaining(TimeUnit unit) {
+            return current().remaining(unit);
+        }
+
+        @Override
+        public boolean isExpired() {
+            return current().isExpired();
+        }
+
+        @Override
+        public void check() {
+            current().check();
+        }
+
+        @Override
+        public String toString() {
+            return current().toString();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.zxw.framework.concurrent;
+
+/**
+ * 请求的时间预算用完了，见Deadline.check
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
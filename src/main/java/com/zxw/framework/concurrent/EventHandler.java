@@ -0,0 +1,9 @@
+package com.zxw.framework.concurrent;
+
+/**
+ * RingBuffer的消费逻辑，endOfBatch为true表示这一批的最后一个，适合在这里flush
+ */
+public interface EventHandler<E> {
+    
+    void onEvent(E event, long sequence, boolean endOfBatch) throws Exception;
+}
@@ -0,0 +1,144 @@
+package com.zxw.framework.concurrent;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * 无锁的多生产者、单消费者环形缓冲区，思路来自Disruptor
+ * <p>槽位在创建时一次性分配好，生产者CAS抢到序号后直接改槽位里的对象，发布时不产生新对象；
+ * 消费者用BatchEventProcessor一次处理一批
+ * <p>用法：
+ * <pre>
+ * long seq = ringBuffer.tryNext();
+ * if (seq >= 0) {
+ *     ringBuffer.get(seq).set(...);
+ *     ringBuffer.publish(seq);
+ * }
+ * </pre>
+ */
+public final class RingBuffer<E> {
+
+    private final Object[] entries;
+
+    private final int mask;
+
+    private final int indexShift;
+
+    //生产者已经抢到的最大序号
+    private final AtomicLong cursor = new AtomicLong(-1);
+
+    //每个槽位发布到了第几圈，用来判断序号是否已经发布
+    private final AtomicIntegerArray availableRounds;
+
+    //消费者已经处理完的序号，生产者不能超过它一圈
+    private final AtomicLong consumerSequence = new AtomicLong(-1);
+
+    //消费者序号的缓存，减少volatile读，允许读到旧值
+    private long cachedConsumerSequence = -1;
+
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * @param bufferSize 必须是2的幂
+     */
+    public RingBuffer(int bufferSize, Supplier<E> factory, WaitStrategy waitStrategy) {
+        if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("bufferSize must be a power of 2");
+        }
+        this.entries = new Object[bufferSize];
+        for (int i = 0; i < bufferSize; i++) {
+            entries[i] = factory.get();
+        }
+        this.mask = bufferSize - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(bufferSize);
+        this.availableRounds = new AtomicIntegerArray(bufferSize);
+        for (int i = 0; i < bufferSize; i++) {
+            availableRounds.set(i, -1);
+        }
+        this.waitStrategy = waitStrategy;
+    }
+
+    public int getBufferSize() {
+        return entries.length;
+    }
+
+    /**
+     * 抢一个序号，缓冲区满了返回-1，不会阻塞
+     */
+    public long tryNext() {
+        long current;
+        long next;
+        do {
+            current = cursor.get();
+            next = current + 1;
+            long wrapPoint = next - entries.length;
+            if (wrapPoint > cachedConsumerSequence) {
+                long consumed = consumerSequence.get();
+                cachedConsumerSequence = consumed;
+                if (wrapPoint > consumed) {
+                    return -1;
+                }
+            }
+        } while (!cursor.compareAndSet(current, next));
+        return next;
+    }
+
+    /**
+     * 抢一个序号，缓冲区满了就等消费者
+     */
+    public long next() {
+        long sequence;
+        while ((sequence = tryNext()) < 0) {
+            LockSupport.parkNanos(1000);
+        }
+        return sequence;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) entries[(int) sequence & mask];
+    }
+
+    public void publish(long sequence) {
+        //有序写就够了，不需要完整的volatile写
+        availableRounds.lazySet((int) sequence & mask, (int) (sequence >>> indexShift));
+        waitStrategy.signalAllWhenBlocking();
+    }
+
+    /**
+     * 还没被消费的数量，近似值
+     */
+    public long backlog() {
+        return cursor.get() - consumerSequence.get();
+    }
+
+    boolean isPublished(long sequence) {
+        return availableRounds.get((int) sequence & mask) == (int) (sequence >>> indexShift);
+    }
+
+    /**
+     * 从lowerBound开始连续发布了的最大序号，lowerBound本身没发布就返回lowerBound-1
+     */
+    long getHighestPublishedSequence(long lowerBound, long availableSequence) {
+        for (long sequence = lowerBound; sequence <= availableSequence; sequence++) {
+            if (!isPublished(sequence)) {
+                return sequence - 1;
+            }
+        }
+        return availableSequence;
+    }
+
+    AtomicLong getCursor() {
+        return cursor;
+    }
+
+    AtomicLong getConsumerSequence() {
+        return consumerSequence;
+    }
+
+    WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+}
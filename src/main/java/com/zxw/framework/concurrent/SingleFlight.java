@@ -0,0 +1,50 @@
+package com.zxw.framework.concurrent;
+
+import java.util.concurrent.*;
+
+/**
+ * 同一个key同时只有一次调用在执行，其余调用等它的结果
+ * <p>每个key一个Future放在ConcurrentHashMap里，没有全局锁；调用结束就移除，结果不缓存
+ */
+public class SingleFlight<K, V> {
+    
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<K, CompletableFuture<V>>();
+    
+    /**
+     * @param timeoutMillis 跟随者最多等待的时间，执行调用的那个请求不受限制
+     * @throws TimeoutException 等待超时
+     */
+    public V execute(K key, Callable<V> call, long timeoutMillis) throws Exception {
+        CompletableFuture<V> future = new CompletableFuture<V>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return existing.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw e;
+            }
+        }
+        
+        try {
+            V value = call.call();
+            future.complete(value);
+            return value;
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw (Exception) t;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+    
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,149 @@
+package com.zxw.framework.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 常用的几种等待策略，按名字创建：
+ * <p>busy-spin 一直自旋，延迟最低，独占一个CPU
+ * <p>yielding 自旋一会儿后yield，延迟低，CPU占用高
+ * <p>sleeping 自旋、yield之后park，延迟和CPU占用比较平衡，生产者不需要唤醒消费者
+ * <p>blocking 用锁和条件变量，CPU占用最低，生产者发布时可能要加锁唤醒
+ */
+public final class WaitStrategies {
+    
+    private WaitStrategies() {
+    }
+    
+    public static WaitStrategy of(String name) {
+        if ("busy-spin".equals(name)) {
+            return new BusySpin();
+        } else if ("yielding".equals(name)) {
+            return new Yielding();
+        } else if ("sleeping".equals(name)) {
+            return new Sleeping(TimeUnit.MICROSECONDS.toNanos(100));
+        } else if ("blocking".equals(name)) {
+            return new Blocking();
+        }
+        throw new IllegalArgumentException("Unknown wait strategy: " + name);
+    }
+    
+    public static final class BusySpin implements WaitStrategy {
+        
+        @Override
+        public long waitFor(long sequence, AtomicLong cursor, BooleanSupplier halted) {
+            long available;
+            while ((available = cursor.get()) < sequence && !halted.getAsBoolean()) {
+                //自旋
+            }
+            return available;
+        }
+        
+        @Override
+        public void signalAllWhenBlocking() {
+        }
+    }
+    
+    public static final class Yielding implements WaitStrategy {
+        
+        private static final int SPIN_TRIES = 100;
+        
+        @Override
+        public long waitFor(long sequence, AtomicLong cursor, BooleanSupplier halted) {
+            int counter = SPIN_TRIES;
+            long available;
+            while ((available = cursor.get()) < sequence && !halted.getAsBoolean()) {
+                if (counter > 0) {
+                    counter--;
+                } else {
+                    Thread.yield();
+                }
+            }
+            return available;
+        }
+        
+        @Override
+        public void signalAllWhenBlocking() {
+        }
+    }
+    
+    public static final class Sleeping implements WaitStrategy {
+        
+        private static final int RETRIES = 200;
+        
+        private final long sleepNanos;
+        
+        public Sleeping(long sleepNanos) {
+            this.sleepNanos = sleepNanos;
+        }
+        
+        @Override
+        public long waitFor(long sequence, AtomicLong cursor, BooleanSupplier halted) throws InterruptedException {
+            int counter = RETRIES;
+            long available;
+            while ((available = cursor.get()) < sequence && !halted.getAsBoolean()) {
+                if (counter > 100) {
+                    counter--;
+                } else if (counter > 0) {
+                    counter--;
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(sleepNanos);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+            }
+            return available;
+        }
+        
+        @Override
+        public void signalAllWhenBlocking() {
+        }
+    }
+    
+    public static final class Blocking implements WaitStrategy {
+        
+        private final ReentrantLock lock = new ReentrantLock();
+        
+        private final Condition notEmpty = lock.newCondition();
+        
+        //消费者真的在等时生产者才需要加锁唤醒
+        private final AtomicBoolean signalNeeded = new AtomicBoolean();
+        
+        @Override
+        public long waitFor(long sequence, AtomicLong cursor, BooleanSupplier halted) throws InterruptedException {
+            long available;
+            while ((available = cursor.get()) < sequence && !halted.getAsBoolean()) {
+                lock.lock();
+                try {
+                    signalNeeded.set(true);
+                    if (cursor.get() < sequence && !halted.getAsBoolean()) {
+                        //带超时，防止halt时错过唤醒
+                        notEmpty.await(1, TimeUnit.MILLISECONDS);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return available;
+        }
+        
+        @Override
+        public void signalAllWhenBlocking() {
+            if (signalNeeded.getAndSet(false)) {
+                lock.lock();
+                try {
+                    notEmpty.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.zxw.framework.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * RingBuffer消费者没有数据时怎么等，在延迟和CPU占用之间取舍
+ *
+ * @see WaitStrategies
+ */
+public interface WaitStrategy {
+    
+    /**
+     * 等到cursor不小于sequence，返回当前的cursor
+     * <p>halted返回true时不再等待，直接返回当前cursor，可能小于sequence
+     */
+    long waitFor(long sequence, AtomicLong cursor, BooleanSupplier halted) throws InterruptedException;
+    
+    /**
+     * 生产者发布之后调用，只有会阻塞的策略需要实现
+     */
+    void signalAllWhenBlocking();
+}
@@ -0,0 +1,11 @@
+package com.zxw.framework.config;
+
+import java.util.Set;
+
+/**
+ * Bean实现这个接口，配置刷新后会收到变化了的key
+ */
+public interface ConfigChangeListener {
+    
+    void onConfigChanged(Set<String> changedKeys, ConfigSnapshot snapshot);
+}
@@ -0,0 +1,137 @@
+package com.zxw.framework.config;
+
+import com.zxw.framework.logging.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用WatchService监听配置文件，改动后重新加载并发布到Environment
+ * <p>只能监听文件系统上的配置，打在jar里的配置不支持
+ * <p>编辑器保存文件往往是先清空再写，会连着来好几个事件：等文件安静quietMillis以后才读；
+ * 读出来是空的，或者少了当前配置里有的key，当成写了一半，不发布
+ */
+public class ConfigFileWatcher implements Runnable {
+    
+    private static final Logger logger = Logger.getLogger(ConfigFileWatcher.class);
+    
+    private final Path file;
+    
+    private final Environment environment;
+    
+    private final WatchService watchService;
+    
+    private final Thread thread;
+    
+    //最后一个事件之后这么久没有新事件才重新加载
+    private final long quietMillis;
+    
+    public ConfigFileWatcher(Path file, Environment environment, long quietMillis) throws IOException {
+        this.file = file;
+        this.environment = environment;
+        this.quietMillis = quietMillis;
+        this.watchService = file.getFileSystem().newWatchService();
+        //WatchService只能监听目录
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_CREATE);
+        this.thread = new Thread(this, "config-watcher");
+        this.thread.setDaemon(true);
+    }
+    
+    public void start() {
+        thread.start();
+    }
+    
+    public void close() {
+        thread.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("Close config watcher failed", e);
+        }
+    }
+    
+    @Override
+    public void run() {
+        Path fileName = file.getFileName();
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException e) {
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            boolean changed = containsFile(key, fileName);
+            if (!key.reset()) {
+                return;
+            }
+            if (!changed) {
+                continue;
+            }
+            //等写文件的一方写完
+            try {
+                while ((key = watchService.poll(quietMillis, TimeUnit.MILLISECONDS)) != null) {
+                    containsFile(key, fileName);
+                    if (!key.reset()) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            reload();
+        }
+    }
+    
+    /**
+     * 取出key上的事件，看有没有这个文件的
+     */
+    private boolean containsFile(WatchKey key, Path fileName) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (fileName.equals(event.context())) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+    
+    private void reload() {
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(file)) {
+            properties.load(is);
+        } catch (IOException e) {
+            logger.error("Read config {} failed", file, e);
+            return;
+        }
+        if (properties.isEmpty()) {
+            logger.warn("Config {} is empty, ignored", file);
+            return;
+        }
+        Set<String> removedKeys = new TreeSet<String>(environment.getSnapshot().keySet());
+        removedKeys.removeAll(properties.stringPropertyNames());
+        if (!removedKeys.isEmpty()) {
+            //可能读到的是写了一半的文件，真要删配置需要重启
+            logger.warn("Config rejected, keys missing :{}", removedKeys);
+            return;
+        }
+        try {
+            Set<String> changedKeys = environment.refresh(properties);
+            if (!changedKeys.isEmpty()) {
+                logger.info("Config reloaded :{}", changedKeys);
+            }
+        } catch (RuntimeException e) {
+            //校验不通过，旧配置继续生效
+            logger.warn("Config rejected :{}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.zxw.framework.config;
+
+import java.util.*;
+
+/**
+ * 某一时刻配置文件的不可变快照
+ * <p>只会整体替换，不会修改，所以读的时候不需要加锁
+ */
+public final class ConfigSnapshot {
+    
+    private final Map<String, String> properties;
+    
+    private final long version;
+    
+    public ConfigSnapshot(Properties source, long version) {
+        Map<String, String> map = new HashMap<String, String>();
+        for (String key : source.stringPropertyNames()) {
+            map.put(key, source.getProperty(key));
+        }
+        this.properties = Collections.unmodifiableMap(map);
+        this.version = version;
+    }
+    
+    public String getProperty(String key) {
+        return properties.get(key);
+    }
+    
+    public String getProperty(String key, String defaultValue) {
+        String value = properties.get(key);
+        return value == null ? defaultValue : value;
+    }
+    
+    public Set<String> keySet() {
+        return properties.keySet();
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * 和旧快照相比，新增、删除、修改过的key
+     */
+    public Set<String> changedKeys(ConfigSnapshot previous) {
+        Set<String> changed = new HashSet<String>();
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            if (!entry.getValue().equals(previous.properties.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String key : previous.properties.keySet()) {
+            if (!properties.containsKey(key)) {
+                changed.add(key);
+            }
+        }
+        return changed;
+    }
+}
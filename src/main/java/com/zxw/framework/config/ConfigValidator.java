@@ -0,0 +1,9 @@
+package com.zxw.framework.config;
+
+/**
+ * 新快照发布前的校验，不合法就抛异常，旧快照继续生效
+ */
+public interface ConfigValidator {
+    
+    void validate(ConfigSnapshot snapshot);
+}
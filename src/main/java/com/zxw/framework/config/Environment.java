@@ -0,0 +1,110 @@
+package com.zxw.framework.config;
+
+import com.zxw.framework.logging.Logger;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 配置的入口，持有当前生效的快照
+ * <p>读配置只是一次volatile读，刷新配置就是一次引用替换
+ * <p>容器会把它放进IOC，需要的Bean直接@Autowired
+ */
+public class Environment {
+    
+    private static final Logger logger = Logger.getLogger(Environment.class);
+    
+    private final AtomicReference<ConfigSnapshot> current;
+    
+    private final List<ConfigValidator> validators = new CopyOnWriteArrayList<ConfigValidator>();
+    
+    private final List<ConfigChangeListener> listeners = new CopyOnWriteArrayList<ConfigChangeListener>();
+    
+    //只在启动时读一次的配置，改了要重启才生效；以.结尾的是前缀
+    private final List<String> restartOnlyKeys = new CopyOnWriteArrayList<String>();
+    
+    public Environment(Properties properties) {
+        this.current = new AtomicReference<ConfigSnapshot>(new ConfigSnapshot(properties, 0));
+    }
+    
+    public ConfigSnapshot getSnapshot() {
+        return current.get();
+    }
+    
+    public String getProperty(String key) {
+        return current.get().getProperty(key);
+    }
+    
+    public String getProperty(String key, String defaultValue) {
+        return current.get().getProperty(key, defaultValue);
+    }
+    
+    public void addValidator(ConfigValidator validator) {
+        validators.add(validator);
+    }
+    
+    public void addListener(ConfigChangeListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * 登记只在启动时读的配置，刷新时它们变了就打警告，免得以为已经生效
+     *
+     * @param keys 完整的key，或者以.结尾的前缀
+     */
+    public void addRestartOnlyKeys(String... keys) {
+        restartOnlyKeys.addAll(Arrays.asList(keys));
+    }
+    
+    public void removeValidator(ConfigValidator validator) {
+        validators.remove(validator);
+    }
+    
+    public void removeListener(ConfigChangeListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * 校验通过后发布新配置，返回变化了的key
+     *
+     * @throws IllegalArgumentException 校验不通过，当前配置不变
+     */
+    public Set<String> refresh(Properties properties) {
+        //刷新只有watcher一个线程在做，版本号直接在旧快照上加
+        ConfigSnapshot next = new ConfigSnapshot(properties, current.get().getVersion() + 1);
+        for (ConfigValidator validator : validators) {
+            validator.validate(next);
+        }
+        ConfigSnapshot previous = current.getAndSet(next);
+        Set<String> changedKeys = next.changedKeys(previous);
+        if (changedKeys.isEmpty()) {
+            return changedKeys;
+        }
+        for (String key : changedKeys) {
+            if (isRestartOnly(key)) {
+                logger.warn("Config {} changed but only takes effect after restart", key);
+            }
+        }
+        for (ConfigChangeListener listener : listeners) {
+            try {
+                listener.onConfigChanged(changedKeys, next);
+            } catch (Exception e) {
+                logger.error("Config listener {} failed", listener, e);
+            }
+        }
+        return changedKeys;
+    }
+    
+    private boolean isRestartOnly(String key) {
+        for (String restartOnly : restartOnlyKeys) {
+            if (restartOnly.endsWith(".") ? key.startsWith(restartOnly) : key.equals(restartOnly)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
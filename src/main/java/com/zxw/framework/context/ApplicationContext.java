@@ -0,0 +1,639 @@
+package com.zxw.framework.context;
+
+import com.zxw.framework.annotation.Controller;
+import com.zxw.framework.annotation.Lazy;
+import com.zxw.framework.annotation.Scheduled;
+import com.zxw.framework.annotation.Service;
+import com.zxw.framework.beans.BeanCreator;
+import com.zxw.framework.beans.BeanDefinition;
+import com.zxw.framework.beans.BeanResolver;
+import com.zxw.framework.concurrent.Deadline;
+import com.zxw.framework.concurrent.WaitStrategies;
+import com.zxw.framework.config.*;
+import com.zxw.framework.event.ApplicationEventPublisher;
+import com.zxw.framework.event.EventBus;
+import com.zxw.framework.logging.Logger;
+import com.zxw.framework.logging.LogManager;
+import com.zxw.framework.scheduling.TaskScheduler;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * IOC容器，原来写在DispatcherServlet里的加载配置、扫描、实例化、DI都放到这里
+ * <p>容器可以有父容器：ContextLoaderListener为整个webapp创建一个只放Service的根容器，
+ * 每个DispatcherServlet再创建一个只放Controller的子容器，子容器找不到的Bean到父容器里找，
+ * 多个Servlet共用同一份Service
+ */
+public class ApplicationContext implements BeanResolver {
+    
+    private static final Logger logger = Logger.getLogger(ApplicationContext.class);
+    
+    //根容器放在ServletContext里的属性名
+    public static final String ROOT_CONTEXT_ATTRIBUTE = ApplicationContext.class.getName() + ".ROOT";
+    
+    private final ApplicationContext parent;
+    
+    //配置文件位置，为空就用父容器的配置
+    private final String configLocation;
+    
+    //这个容器负责实例化哪些注解的类
+    private final Set<Class<? extends Annotation>> componentTypes;
+    
+    //保存application.properties配置文件中的内容
+    private Properties contextConfig = new Properties();
+    
+    //配置的不可变快照，配置文件改动后整体替换
+    private Environment environment;
+    
+    private ConfigFileWatcher configFileWatcher;
+    
+    //传说中的IOC容器，我们来揭开它的神秘面纱
+    //懒加载的Bean会在请求线程上创建，所以用ConcurrentHashMap，refresh之后只放初始化完成的Bean
+    private Map<String, Object> ioc = new ConcurrentHashMap<String, Object>();
+    
+    //正在初始化的懒加载Bean，同一线程上的循环引用先从这里拿，最外层的Bean初始化完才一起放进ioc
+    private Map<String, Object> earlySingletons = new LinkedHashMap<String, Object>();
+    
+    private int lazyCreationDepth;
+    
+    //懒加载Bean注入@Value时用的配置，放进ioc之前配置变了要重新注入，valueReinjector只管ioc里的Bean
+    private Map<String, ConfigSnapshot> earlyValueSnapshots = new HashMap<String, ConfigSnapshot>();
+    
+    //refresh时创建的Bean，按DI、@Value、事件、定时任务分阶段处理；之后创建的懒加载Bean在getBean里一次处理完
+    private List<BeanDefinition> eagerBeans = new ArrayList<BeanDefinition>();
+    
+    private boolean instantiating;
+    
+    //保存扫描的所有的类名
+    private List<String> classNames = new ArrayList<String>();
+    
+    //扫描出来的Bean定义，beanName和别名都能找到
+    private List<BeanDefinition> beanDefinitions = new ArrayList<BeanDefinition>();
+    
+    private Map<String, BeanDefinition> beanDefinitionMap = new HashMap<String, BeanDefinition>();
+    
+    //正在通过构造器创建的Bean，用来发现构造器循环依赖
+    private Set<String> singletonsCurrentlyInCreation = new HashSet<String>();
+    
+    //有@Scheduled方法时才创建
+    private TaskScheduler taskScheduler;
+    
+    //事件总线，子容器和父容器共用一个
+    private EventBus eventBus;
+    
+    //注册到Environment上的@Value校验和重新注入，子容器关闭时要从共用的Environment上去掉
+    private ConfigValidator valueValidator;
+    
+    private ConfigChangeListener valueReinjector;
+    
+    @SafeVarargs
+    public ApplicationContext(String configLocation, ApplicationContext parent,
+            Class<? extends Annotation>... componentTypes) {
+        this.configLocation = configLocation;
+        this.parent = parent;
+        //不把可变参数数组传给别的方法，-Xlint:varargs才不会报
+        this.componentTypes = new HashSet<Class<? extends Annotation>>();
+        for (Class<? extends Annotation> componentType : componentTypes) {
+            this.componentTypes.add(componentType);
+        }
+    }
+    
+    /**
+     * <p>1.加载配置文件，没有配置就和父容器共用
+     * <p>2.扫描相关的类
+     * <p>3.利用反射，创建实例并保存到容器
+     * <p>4.扫描容器 进行DI操作 给没赋值的赋值
+     * <p>5.注入@Value，监听配置文件
+     * <p>6.注册@EventListener，开始调度@Scheduled方法
+     */
+    public void refresh() {
+        if (configLocation == null && parent != null) {
+            environment = parent.getEnvironment();
+        } else {
+            // 加载配置文件
+            doLoadConfig(configLocation);
+            environment = new Environment(contextConfig);
+            //这些只在启动时读一次，线程池、环形队列、日志文件都不会跟着配置重建
+            environment.addRestartOnlyKeys("scanPackage", "lazy-init", "config.reload.", "event.", "scheduler.",
+                    "logging.");
+        }
+        //日志是全局的，只按最外层容器的配置来，有多个最外层容器时按引用计数共用
+        if (parent == null) {
+            LogManager.configure(environment);
+        }
+        ioc.put(Environment.class.getName(), environment);
+        //注入的是代理，每次调用都取当前请求的期限
+        ioc.put(Deadline.class.getName(), Deadline.requestScoped());
+        
+        if (parent != null) {
+            eventBus = parent.getEventBus();
+        } else {
+            eventBus = new EventBus(Integer.parseInt(environment.getProperty("event.ringBufferSize", "1024")),
+                    WaitStrategies.of(environment.getProperty("event.waitStrategy", "sleeping")),
+                    environment.getProperty("event.overflow", EventBus.OVERFLOW_BLOCK));
+        }
+        ioc.put(ApplicationEventPublisher.class.getName(), eventBus);
+        
+        //扫描相关的类
+        doScanner(environment.getProperty("scanPackage"));
+        
+        //初始化扫描到的类，并且将它们放入到ICO容器之中
+        try {
+            doInstance();
+        } catch (RuntimeException e) {
+            //配置错误让启动直接失败，已经启动的线程先停掉
+            close();
+            throw e;
+        }
+        
+        //完成依赖注入
+        doAutowired();
+        
+        //注入@Value，并在配置刷新时重新注入
+        doInjectValues();
+        
+        //只有自己加载的配置才监听
+        if (environment != (parent == null ? null : parent.getEnvironment())) {
+            startConfigWatcher(configLocation);
+        }
+        
+        //事件监听
+        doRegisterEventListeners();
+        
+        //定时任务
+        doRegisterScheduledTasks();
+    }
+    
+    public void close() {
+        if (parent != null) {
+            detachFromParent();
+        }
+        if (taskScheduler != null) {
+            taskScheduler.shutdown();
+        }
+        //事件总线是父容器的，由父容器关
+        if (parent == null && eventBus != null) {
+            eventBus.close();
+        }
+        if (configFileWatcher != null) {
+            configFileWatcher.close();
+        }
+        if (parent == null) {
+            LogManager.shutdown();
+        }
+    }
+    
+    /**
+     * 事件总线和配置可能是父容器的，子容器关掉以后不能再回调到自己的Bean上
+     */
+    private synchronized void detachFromParent() {
+        boolean sharedEnvironment = environment == parent.getEnvironment();
+        if (sharedEnvironment) {
+            environment.removeValidator(valueValidator);
+            environment.removeListener(valueReinjector);
+        }
+        for (BeanDefinition beanDefinition : beanDefinitions) {
+            Object instance = ioc.get(beanDefinition.getBeanName());
+            if (instance == null) {
+                continue;
+            }
+            eventBus.unregisterListeners(instance);
+            if (sharedEnvironment && instance instanceof ConfigChangeListener) {
+                environment.removeListener((ConfigChangeListener) instance);
+            }
+        }
+    }
+    
+    public ApplicationContext getParent() {
+        return parent;
+    }
+    
+    public Environment getEnvironment() {
+        return environment;
+    }
+    
+    public EventBus getEventBus() {
+        return eventBus;
+    }
+    
+    /**
+     * 这个容器自己创建的、加了某个注解的Bean，不包括父容器，也不包括还没创建的懒加载Bean
+     */
+    public Map<String, Object> getBeansWithAnnotation(Class<? extends Annotation> annotationType) {
+        Map<String, Object> beans = new LinkedHashMap<String, Object>();
+        for (BeanDefinition beanDefinition : getBeanDefinitionsWithAnnotation(annotationType)) {
+            Object instance = ioc.get(beanDefinition.getBeanName());
+            if (instance != null) {
+                beans.put(beanDefinition.getBeanName(), instance);
+            }
+        }
+        return beans;
+    }
+    
+    /**
+     * 这个容器里加了某个注解的Bean定义，懒加载的也在里面
+     */
+    public List<BeanDefinition> getBeanDefinitionsWithAnnotation(Class<? extends Annotation> annotationType) {
+        List<BeanDefinition> result = new ArrayList<BeanDefinition>();
+        for (BeanDefinition beanDefinition : beanDefinitions) {
+            if (beanDefinition.getBeanClass().isAnnotationPresent(annotationType)) {
+                result.add(beanDefinition);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * DI 注入
+     */
+    private void doAutowired() {
+        if (ioc.isEmpty()) {
+            return;
+        }
+        
+        //接口名作为别名也放在ioc里，按BeanDefinition遍历避免同一个实例注入多次
+        for (BeanDefinition beanDefinition : eagerBeans) {
+            Object instance = ioc.get(beanDefinition.getBeanName());
+            try {
+                //字段的setter在BeanCreator里已经编译好了，不再每次反射
+                BeanCreator.forClass(beanDefinition.getBeanClass()).inject(instance, this);
+            } catch (Exception e) {
+                logger.error("Autowire {} failed", beanDefinition.getBeanName(), e);
+            }
+        }
+    }
+    
+    /**
+     * 注入@Value，注册配置校验和刷新后的重新注入
+     */
+    private void doInjectValues() {
+        final ConfigSnapshot snapshot = environment.getSnapshot();
+        for (BeanDefinition beanDefinition : eagerBeans) {
+            BeanCreator creator = BeanCreator.forClass(beanDefinition.getBeanClass());
+            if (creator.hasValueInjectors()) {
+                creator.injectValues(ioc.get(beanDefinition.getBeanName()), snapshot, null);
+            }
+        }
+        
+        //新配置必须能注入到所有的@Value字段上才发布，还没创建的懒加载Bean也要检查
+        valueValidator = new ConfigValidator() {
+            @Override
+            public void validate(ConfigSnapshot next) {
+                for (BeanDefinition beanDefinition : beanDefinitions) {
+                    BeanCreator.forClass(beanDefinition.getBeanClass()).validateValues(next);
+                }
+            }
+        };
+        environment.addValidator(valueValidator);
+        //先重新注入，再通知实现了ConfigChangeListener的Bean
+        valueReinjector = new ConfigChangeListener() {
+            @Override
+            public void onConfigChanged(Set<String> changedKeys, ConfigSnapshot next) {
+                for (BeanDefinition beanDefinition : beanDefinitions) {
+                    BeanCreator creator = BeanCreator.forClass(beanDefinition.getBeanClass());
+                    Object instance = ioc.get(beanDefinition.getBeanName());
+                    if (instance != null && creator.hasValueInjectors()) {
+                        creator.injectValues(instance, next, changedKeys);
+                    }
+                }
+            }
+        };
+        environment.addListener(valueReinjector);
+        for (BeanDefinition beanDefinition : eagerBeans) {
+            Object instance = ioc.get(beanDefinition.getBeanName());
+            if (instance instanceof ConfigChangeListener) {
+                environment.addListener((ConfigChangeListener) instance);
+            }
+        }
+    }
+    
+    /**
+     * 把Bean上的@EventListener方法注册到事件总线
+     */
+    private void doRegisterEventListeners() {
+        for (BeanDefinition beanDefinition : eagerBeans) {
+            try {
+                eventBus.registerListeners(ioc.get(beanDefinition.getBeanName()));
+            } catch (Exception e) {
+                logger.error("Register event listeners of {} failed", beanDefinition.getBeanName(), e);
+            }
+        }
+    }
+    
+    /**
+     * 找出Bean上的@Scheduled方法交给TaskScheduler，容器close时停止
+     */
+    private void doRegisterScheduledTasks() {
+        for (BeanDefinition beanDefinition : eagerBeans) {
+            registerScheduledTasks(beanDefinition, ioc.get(beanDefinition.getBeanName()));
+        }
+    }
+    
+    private void registerScheduledTasks(BeanDefinition beanDefinition, Object instance) {
+        boolean hasScheduled = false;
+        for (Method method : beanDefinition.getBeanClass().getMethods()) {
+            if (method.isAnnotationPresent(Scheduled.class)) {
+                hasScheduled = true;
+                break;
+            }
+        }
+        if (!hasScheduled) {
+            return;
+        }
+        if (taskScheduler == null) {
+            taskScheduler = new TaskScheduler(
+                    Integer.parseInt(environment.getProperty("scheduler.poolSize", "4")),
+                    Integer.parseInt(environment.getProperty("scheduler.queueCapacity", "1000")),
+                    Long.parseLong(environment.getProperty("scheduler.tickDuration", "100")),
+                    Integer.parseInt(environment.getProperty("scheduler.ticksPerWheel", "512")));
+        }
+        try {
+            taskScheduler.registerScheduledMethods(instance);
+        } catch (Exception e) {
+            logger.error("Register scheduled methods of {} failed", beanDefinition.getBeanName(), e);
+        }
+    }
+    
+    /**
+     * refresh之后才创建的懒加载Bean，DI、@Value、事件监听、定时任务一次做完
+     * <p>失败时撤销已经做了的注册再抛出去，这个Bean不会放进ioc，下次getBean重新创建
+     */
+    private void initializeBean(BeanDefinition beanDefinition, Object instance) {
+        BeanCreator creator = BeanCreator.forClass(beanDefinition.getBeanClass());
+        try {
+            creator.inject(instance, this);
+            if (creator.hasValueInjectors()) {
+                ConfigSnapshot snapshot = environment.getSnapshot();
+                creator.injectValues(instance, snapshot, null);
+                earlyValueSnapshots.put(beanDefinition.getBeanName(), snapshot);
+            }
+            if (instance instanceof ConfigChangeListener) {
+                environment.addListener((ConfigChangeListener) instance);
+            }
+            eventBus.registerListeners(instance);
+        } catch (RuntimeException e) {
+            if (instance instanceof ConfigChangeListener) {
+                environment.removeListener((ConfigChangeListener) instance);
+            }
+            eventBus.unregisterListeners(instance);
+            throw e;
+        }
+        registerScheduledTasks(beanDefinition, instance);
+    }
+    
+    /**
+     * 注入后配置又刷新过就按最新的再注入一遍，直到注入用的就是当前配置
+     *
+     * @return 最后注入用的配置
+     */
+    private ConfigSnapshot injectLatestValues(BeanDefinition beanDefinition, Object instance,
+            ConfigSnapshot injected) {
+        BeanCreator creator = BeanCreator.forClass(beanDefinition.getBeanClass());
+        ConfigSnapshot latest;
+        while ((latest = environment.getSnapshot()) != injected) {
+            creator.injectValues(instance, latest, null);
+            injected = latest;
+        }
+        return injected;
+    }
+    
+    /**
+     * 通过反射 在IOC容器 初始化bean
+     */
+    private void doInstance() {
+        //初始化，为DI做准备
+        if (classNames.isEmpty()) {
+            return;
+        }
+        
+        //lazy-init=true时没加@Lazy(false)的Bean都等到第一次用到再创建
+        boolean lazyByDefault = Boolean.parseBoolean(environment.getProperty("lazy-init", "false"));
+        try {
+            //先把BeanDefinition都注册好，构造器注入时才能找到还没创建的依赖
+            for (String className : classNames) {
+                Class<?> clazz = Class.forName(className);
+                
+                //什么样的类才需要初始化呢？
+                //加了注解的类，才初始化，怎么判断？
+                //为了简化代码逻辑，主要体会设计思想，只举例 @Controller和@Service,
+                // @Componment...就一一举例了
+                if (clazz.isAnnotationPresent(Controller.class) && componentTypes.contains(Controller.class)) {
+                    //Spring默认类名首字母小写
+                    String beanName = toLowerFirstCase(clazz.getSimpleName());
+                    registerBeanDefinition(new BeanDefinition(beanName, clazz), lazyByDefault);
+                } else if (clazz.isAnnotationPresent(Service.class) && componentTypes.contains(Service.class)) {
+                    //service不但要实例化本身 还有接口
+                    //1、自定义的beanName
+                    Service service = clazz.getAnnotation(Service.class);
+                    String beanName = service.value();
+                    //2、默认类名首字母小写
+                    if ("".equals(beanName.trim())) {
+                        beanName = toLowerFirstCase(clazz.getSimpleName());
+                    }
+                    
+                    BeanDefinition beanDefinition = new BeanDefinition(beanName, clazz);
+                    //3、根据类型自动赋值,投机取巧的方式
+                    for (Class<?> i : clazz.getInterfaces()) {
+                        if (beanDefinitionMap.containsKey(i.getName())) {
+                            throw new Exception("The “" + i.getName() + "” is exists!!");
+                        }
+                        //把接口的类型直接当成key了
+                        beanDefinition.addAlias(i.getName());
+                    }
+                    registerBeanDefinition(beanDefinition, lazyByDefault);
+                } else {
+                    continue;
+                }
+                
+            }
+            
+            instantiating = true;
+            try {
+                for (BeanDefinition beanDefinition : beanDefinitions) {
+                    if (!beanDefinition.isLazyInit()) {
+                        getBean(beanDefinition.getBeanName());
+                    }
+                }
+            } finally {
+                instantiating = false;
+            }
+        } catch (IllegalStateException e) {
+            //BeanCreator发现的配置错误（比如@Value字段不是volatile、构造器循环依赖），不能带着半个容器启动
+            throw e;
+        } catch (Exception e) {
+            logger.error("Create beans failed", e);
+        }
+    }
+    
+    private void registerBeanDefinition(BeanDefinition beanDefinition, boolean lazyByDefault) {
+        Lazy lazy = beanDefinition.getBeanClass().getAnnotation(Lazy.class);
+        beanDefinition.setLazyInit(lazy == null ? lazyByDefault : lazy.value());
+        beanDefinitions.add(beanDefinition);
+        beanDefinitionMap.put(beanDefinition.getBeanName(), beanDefinition);
+        for (String alias : beanDefinition.getAliases()) {
+            beanDefinitionMap.put(alias, beanDefinition);
+        }
+    }
+    
+    /**
+     * 取Bean，还没创建就先创建，构造器的依赖会递归创建
+     * <p>自己没有的到父容器里找
+     * <p>懒加载的Bean可能被多个请求同时触发创建，创建过程加锁，已经创建好的直接从ioc取不加锁
+     */
+    @Override
+    public Object getBean(String beanName) {
+        Object instance = ioc.get(beanName);
+        if (instance != null) {
+            return instance;
+        }
+        BeanDefinition beanDefinition = beanDefinitionMap.get(beanName);
+        if (beanDefinition == null) {
+            //和字段注入一样，找不到就是null
+            return parent == null ? null : parent.getBean(beanName);
+        }
+        synchronized (this) {
+            instance = ioc.get(beanName);
+            if (instance == null) {
+                instance = earlySingletons.get(beanDefinition.getBeanName());
+            }
+            if (instance != null) {
+                return instance;
+            }
+            if (!singletonsCurrentlyInCreation.add(beanDefinition.getBeanName())) {
+                throw new IllegalStateException("Circular constructor dependency on " + beanDefinition.getBeanName());
+            }
+            try {
+                instance = BeanCreator.forClass(beanDefinition.getBeanClass()).newInstance(this);
+            } finally {
+                singletonsCurrentlyInCreation.remove(beanDefinition.getBeanName());
+            }
+            
+            //refresh时创建的后面分阶段处理
+            if (instantiating) {
+                registerSingleton(beanDefinition, instance);
+                eagerBeans.add(beanDefinition);
+                return instance;
+            }
+            
+            earlySingletons.put(beanDefinition.getBeanName(), instance);
+            lazyCreationDepth++;
+            try {
+                initializeBean(beanDefinition, instance);
+            } catch (RuntimeException e) {
+                earlySingletons.remove(beanDefinition.getBeanName());
+                earlyValueSnapshots.remove(beanDefinition.getBeanName());
+                throw e;
+            } finally {
+                if (--lazyCreationDepth == 0) {
+                    publishEarlySingletons();
+                }
+            }
+            return instance;
+        }
+    }
+    
+    /**
+     * 最外层的懒加载Bean初始化完，把这一批都放进ioc
+     * <p>放进去之前和之后各对一次@Value：之前保证拿到的不是旧配置，之后补上中间刷新、valueReinjector没看到的那次
+     */
+    private void publishEarlySingletons() {
+        try {
+            for (Map.Entry<String, Object> early : earlySingletons.entrySet()) {
+                BeanDefinition beanDefinition = beanDefinitionMap.get(early.getKey());
+                ConfigSnapshot injected = earlyValueSnapshots.get(early.getKey());
+                if (injected != null) {
+                    injected = injectLatestValues(beanDefinition, early.getValue(), injected);
+                }
+                registerSingleton(beanDefinition, early.getValue());
+                if (injected != null) {
+                    injectLatestValues(beanDefinition, early.getValue(), injected);
+                }
+            }
+        } finally {
+            earlySingletons.clear();
+            earlyValueSnapshots.clear();
+        }
+    }
+    
+    private void registerSingleton(BeanDefinition beanDefinition, Object instance) {
+        ioc.put(beanDefinition.getBeanName(), instance);
+        for (String alias : beanDefinition.getAliases()) {
+            ioc.put(alias, instance);
+        }
+    }
+    
+    /**
+     * 首字母小写
+     */
+    private String toLowerFirstCase(String simpleName) {
+        char[] chars = simpleName.toCharArray();
+        //之所以加，是因为大小写字母的ASCII码相差32，
+        // 而且大写字母的ASCII码要小于小写字母的ASCII码
+        //在Java中，对char做算学运算，实际上就是对ASCII码做算学运算
+        chars[0] += 32;
+        return String.valueOf(chars);
+    }
+    
+    /**
+     * 扫描相关的类,获取类名
+     *
+     * @param scanPackage 扫描的包路径
+     */
+    private void doScanner(String scanPackage) {
+        //扫描的地址  包路径转化为文件路径
+        //ClassLoader.getResource不带开头的/，Tomcat的类加载器两种都认，普通classpath（比如StartupBenchmark）只认这种
+        URL url = this.getClass().getClassLoader().getResource(scanPackage.replaceAll("\\.", "/"));
+        File classPath = new File(url.getFile());
+        for (File file : classPath.listFiles()) {
+            if (file.isDirectory()) {
+                doScanner(scanPackage + "." + file.getName());
+            } else {
+                if (!file.getName().endsWith(".class")) {
+                    continue;
+                }
+                String className = (scanPackage + "." + file.getName().replace(".class", ""));
+                classNames.add(className);
+            }
+        }
+    }
+    
+    /**
+     * 加载配置文件
+     *
+     * @param contextConfigLocation 配置类位置
+     */
+    private void doLoadConfig(String contextConfigLocation) {
+        try (InputStream fis = this.getClass().getClassLoader().getResourceAsStream(contextConfigLocation);) {
+            contextConfig.load(fis);
+        } catch (Exception e) {
+            logger.error("Load config {} failed", contextConfigLocation, e);
+        }
+    }
+    
+    /**
+     * 配置文件在文件系统上才能监听，config.reload.enabled=false可以关掉
+     */
+    private void startConfigWatcher(String contextConfigLocation) {
+        if (!Boolean.parseBoolean(environment.getProperty("config.reload.enabled", "true"))) {
+            return;
+        }
+        URL url = this.getClass().getClassLoader().getResource(contextConfigLocation);
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return;
+        }
+        try {
+            configFileWatcher = new ConfigFileWatcher(Paths.get(url.toURI()), environment,
+                    Long.parseLong(environment.getProperty("config.reload.quietMillis", "200")));
+            configFileWatcher.start();
+        } catch (Exception e) {
+            logger.error("Watch config {} failed", configLocation, e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.zxw.framework.context;
+
+import com.zxw.framework.annotation.Service;
+import com.zxw.framework.logging.Logger;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * 整个webapp只创建一次的根容器，只放Service，放到ServletContext里给所有DispatcherServlet共用
+ * <p>配置文件由context-param里的contextConfigLocation指定
+ */
+public class ContextLoaderListener implements ServletContextListener {
+    
+    private static final Logger logger = Logger.getLogger(ContextLoaderListener.class);
+    
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        ServletContext servletContext = event.getServletContext();
+        if (servletContext.getAttribute(ApplicationContext.ROOT_CONTEXT_ATTRIBUTE) != null) {
+            throw new IllegalStateException("Root application context is already present");
+        }
+        ApplicationContext root = new ApplicationContext(servletContext.getInitParameter("contextConfigLocation"),
+                null, Service.class);
+        root.refresh();
+        servletContext.setAttribute(ApplicationContext.ROOT_CONTEXT_ATTRIBUTE, root);
+        logger.info("Root application context is init.");
+    }
+    
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        ServletContext servletContext = event.getServletContext();
+        ApplicationContext root = (ApplicationContext) servletContext.getAttribute(
+                ApplicationContext.ROOT_CONTEXT_ATTRIBUTE);
+        if (root != null) {
+            root.close();
+            servletContext.removeAttribute(ApplicationContext.ROOT_CONTEXT_ATTRIBUTE);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.zxw.framework.event;
+
+/**
+ * 发布事件，容器里已经有一个实现，直接@Autowired
+ */
+public interface ApplicationEventPublisher {
+    
+    void publishEvent(Object event);
+}
@@ -0,0 +1,311 @@
+package com.zxw.framework.event;
+
+import com.zxw.framework.annotation.EventListener;
+import com.zxw.framework.concurrent.BatchEventProcessor;
+import com.zxw.framework.concurrent.EventHandler;
+import com.zxw.framework.concurrent.RingBuffer;
+import com.zxw.framework.concurrent.WaitStrategy;
+import com.zxw.framework.logging.Logger;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * 容器内的事件总线
+ * <p>启动时把@EventListener方法编译成绑定了Bean的MethodHandle，按事件类型缓存好要调用的监听器；
+ * 同步监听器在发布线程上直接调用，异步监听器通过RingBuffer交给后台线程批量处理，
+ * 发布一次只是一次CAS抢槽位加两次写，不加锁也不创建对象
+ * <p>RingBuffer满了怎么办由overflow决定：block等待消费者，drop丢弃并计数，caller-runs在发布线程上直接调用
+ */
+public class EventBus implements ApplicationEventPublisher {
+
+    private static final Logger logger = Logger.getLogger(EventBus.class);
+
+    public static final String OVERFLOW_BLOCK = "block";
+
+    public static final String OVERFLOW_DROP = "drop";
+
+    public static final String OVERFLOW_CALLER_RUNS = "caller-runs";
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(void.class, Object.class);
+
+    private static final ListenerInvoker[] NO_LISTENERS = new ListenerInvoker[0];
+
+    private final List<ListenerInvoker> listeners = new CopyOnWriteArrayList<ListenerInvoker>();
+
+    //事件类型 -> [同步监听器, 异步监听器]
+    private final ConcurrentMap<Class<?>, ListenerInvoker[][]> listenerCache =
+            new ConcurrentHashMap<Class<?>, ListenerInvoker[][]>();
+
+    //监听器每变一次加一，懒加载Bean会在请求线程上注册，发布时用它发现自己算出来的缓存已经过时
+    private final AtomicLong listenerVersion = new AtomicLong();
+
+    private final RingBuffer<EventSlot> ringBuffer;
+
+    private final BatchEventProcessor<EventSlot> processor;
+
+    private final Thread processorThread;
+
+    private final String overflow;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * @param bufferSize 必须是2的幂
+     */
+    public EventBus(int bufferSize, WaitStrategy waitStrategy, String overflow) {
+        if (!OVERFLOW_BLOCK.equals(overflow) && !OVERFLOW_DROP.equals(overflow)
+                && !OVERFLOW_CALLER_RUNS.equals(overflow)) {
+            throw new IllegalArgumentException("Unknown overflow policy: " + overflow);
+        }
+        this.overflow = overflow;
+        this.ringBuffer = new RingBuffer<EventSlot>(bufferSize, new Supplier<EventSlot>() {
+            @Override
+            public EventSlot get() {
+                return new EventSlot();
+            }
+        }, waitStrategy);
+        this.processor = new BatchEventProcessor<EventSlot>(ringBuffer, new EventHandler<EventSlot>() {
+            @Override
+            public void onEvent(EventSlot slot, long sequence, boolean endOfBatch) {
+                Object event = slot.event;
+                ListenerInvoker[] invokers = slot.listeners;
+                //槽位会被复用，先清掉引用
+                slot.event = null;
+                slot.listeners = null;
+                for (ListenerInvoker invoker : invokers) {
+                    invoker.invokeQuietly(event);
+                }
+            }
+        });
+        this.processorThread = new Thread(processor, "event-bus");
+        this.processorThread.setDaemon(true);
+        this.processorThread.start();
+    }
+
+    /**
+     * 找出bean上所有的@EventListener方法
+     *
+     * @return 找到的方法个数
+     */
+    public int registerListeners(Object bean) {
+        int count = 0;
+        for (Method method : bean.getClass().getMethods()) {
+            EventListener eventListener = method.getAnnotation(EventListener.class);
+            if (eventListener == null) {
+                continue;
+            }
+            Class<?>[] paramTypes = method.getParameterTypes();
+            if (paramTypes.length != 1 || Modifier.isStatic(method.getModifiers())) {
+                throw new IllegalStateException("@EventListener method must have exactly one parameter: " + method);
+            }
+            try {
+                method.setAccessible(true);
+                MethodHandle invoker = MethodHandles.lookup().unreflect(method).bindTo(bean).asType(INVOKER_TYPE);
+                listeners.add(new ListenerInvoker(method.getDeclaringClass().getSimpleName() + "." + method.getName(),
+                        bean, paramTypes[0], invoker, eventListener.async()));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot access @EventListener method " + method, e);
+            }
+            count++;
+        }
+        if (count > 0) {
+            invalidateListenerCache();
+        }
+        return count;
+    }
+
+    /**
+     * 去掉bean上的@EventListener方法，子容器关闭时调用
+     * <p>已经放进RingBuffer的异步事件还是会送到
+     *
+     * @return 去掉的方法个数
+     */
+    public int unregisterListeners(Object bean) {
+        List<ListenerInvoker> removed = new ArrayList<ListenerInvoker>();
+        for (ListenerInvoker invoker : listeners) {
+            if (invoker.bean == bean) {
+                removed.add(invoker);
+            }
+        }
+        if (!removed.isEmpty()) {
+            listeners.removeAll(removed);
+            invalidateListenerCache();
+        }
+        return removed.size();
+    }
+
+    @Override
+    public void publishEvent(Object event) {
+        ListenerInvoker[][] resolved = resolveListeners(event.getClass());
+        for (ListenerInvoker invoker : resolved[0]) {
+            invoker.invoke(event);
+        }
+
+        ListenerInvoker[] async = resolved[1];
+        if (async.length == 0) {
+            return;
+        }
+        //关闭以后没有消费者了，定时任务、写线程这些晚到的发布方直接在自己线程上调用
+        if (closed) {
+            runOnCaller(event, async);
+            return;
+        }
+        long sequence = ringBuffer.tryNext();
+        if (sequence < 0) {
+            if (OVERFLOW_DROP.equals(overflow)) {
+                dropped.incrementAndGet();
+                return;
+            } else if (OVERFLOW_CALLER_RUNS.equals(overflow)) {
+                runOnCaller(event, async);
+                return;
+            }
+            //等消费者腾出位置，等的过程中关闭了就不再等
+            while ((sequence = ringBuffer.tryNext()) < 0) {
+                if (closed) {
+                    runOnCaller(event, async);
+                    return;
+                }
+                LockSupport.parkNanos(1000);
+            }
+        }
+        EventSlot slot = ringBuffer.get(sequence);
+        slot.event = event;
+        slot.listeners = async;
+        ringBuffer.publish(sequence);
+    }
+
+    private void runOnCaller(Object event, ListenerInvoker[] async) {
+        for (ListenerInvoker invoker : async) {
+            invoker.invokeQuietly(event);
+        }
+    }
+
+    /**
+     * overflow=drop时丢掉的事件数
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * 已经发布的异步事件处理完再停，之后发布的异步事件在发布线程上调用
+     */
+    public void close() {
+        closed = true;
+        processor.halt();
+        try {
+            processorThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 先改监听器列表，再加版本号，最后清缓存
+     */
+    private void invalidateListenerCache() {
+        listenerVersion.incrementAndGet();
+        listenerCache.clear();
+    }
+
+    /**
+     * 没有缓存时按当前的监听器算一遍放进缓存
+     * <p>算的过程中有人注册或注销了，放进去的可能是旧的：放完再看一眼版本号，变了就拿掉，下次发布重新算；
+     * 版本号是在放进去之后才变的，后面的clear会把它清掉
+     */
+    private ListenerInvoker[][] resolveListeners(Class<?> eventType) {
+        ListenerInvoker[][] resolved = listenerCache.get(eventType);
+        if (resolved != null) {
+            return resolved;
+        }
+        long version = listenerVersion.get();
+        List<ListenerInvoker> sync = new ArrayList<ListenerInvoker>();
+        List<ListenerInvoker> async = new ArrayList<ListenerInvoker>();
+        for (ListenerInvoker invoker : listeners) {
+            if (invoker.eventType.isAssignableFrom(eventType)) {
+                (invoker.async ? async : sync).add(invoker);
+            }
+        }
+        resolved = new ListenerInvoker[][] {
+                sync.isEmpty() ? NO_LISTENERS : sync.toArray(new ListenerInvoker[0]),
+                async.isEmpty() ? NO_LISTENERS : async.toArray(new ListenerInvoker[0])};
+        listenerCache.put(eventType, resolved);
+        if (listenerVersion.get() != version) {
+            listenerCache.remove(eventType, resolved);
+        }
+        return resolved;
+    }
+
+    /**
+     * RingBuffer的槽位，预先分配，反复使用
+     */
+    private static final class EventSlot {
+
+        private Object event;
+
+        private ListenerInvoker[] listeners;
+    }
+
+    private static final class ListenerInvoker {
+
+        private final String name;
+
+        //注销时按bean找
+        private final Object bean;
+
+        private final Class<?> eventType;
+
+        //(Object)void，已经绑定了bean
+        private final MethodHandle invoker;
+
+        private final boolean async;
+
+        ListenerInvoker(String name, Object bean, Class<?> eventType, MethodHandle invoker, boolean async) {
+            this.name = name;
+            this.bean = bean;
+            this.eventType = eventType;
+            this.invoker = invoker;
+            this.async = async;
+        }
+
+        /**
+         * 同步监听器的异常抛给发布方
+         */
+        void invoke(Object event) {
+            try {
+                invoker.invokeExact(event);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Event listener " + name + " failed", t);
+            }
+        }
+
+        /**
+         * 异步监听器的异常没有人接，打印出来
+         */
+        void invokeQuietly(Object event) {
+            try {
+                invoker.invokeExact(event);
+            } catch (Throwable t) {
+                logger.error("Event listener {} failed", name, t);
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.zxw.framework.json;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 绑定JSON对象到普通的类
+ * <p>有无参构造器的按字段名赋值：先new出来，每读到一个属性就调用它的字段setter；
+ * 没有无参构造器的当成不可变类（records风格），属性先放进数组，读完再调用参数最多的构造器，
+ * 构造器参数名取不到（编译时没加-parameters）就按字段声明顺序对应
+ * <p>JSON里多出来的属性跳过，缺少的属性保持默认值
+ */
+final class BeanBindingPlan extends BindingPlan {
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Class<?> type;
+
+    //(Object[])Object，参数已经展开好了；按字段赋值时参数为空
+    private final MethodHandle constructor;
+
+    //按构造器绑定时每个参数的默认值，基本类型不能是null
+    private final Object[] defaults;
+
+    private final boolean byConstructor;
+
+    private final Map<String, Property> properties = new HashMap<String, Property>();
+
+    BeanBindingPlan(Class<?> type) {
+        this.type = type;
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Constructor<?> ctor = determineConstructor(type);
+        Class<?>[] paramTypes = ctor.getParameterTypes();
+        this.byConstructor = paramTypes.length > 0;
+        try {
+            ctor.setAccessible(true);
+            constructor = lookup.unreflectConstructor(ctor)
+                    .asSpreader(Object[].class, paramTypes.length)
+                    .asType(CONSTRUCTOR_TYPE);
+
+            defaults = new Object[paramTypes.length];
+            if (byConstructor) {
+                String[] names = parameterNames(ctor);
+                Type[] genericTypes = ctor.getGenericParameterTypes();
+                for (int i = 0; i < paramTypes.length; i++) {
+                    if (paramTypes[i].isPrimitive()) {
+                        defaults[i] = Array.get(Array.newInstance(paramTypes[i], 1), 0);
+                    }
+                    properties.put(names[i], new Property(names[i], genericTypes[i], paramTypes[i], null, i));
+                }
+            } else {
+                for (Field field : instanceFields(type)) {
+                    if (properties.containsKey(field.getName())) {
+                        //子类的字段盖住父类同名字段
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    MethodHandle setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+                    properties.put(field.getName(), new Property(field.getName(), field.getGenericType(),
+                            field.getType(), setter, -1));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new JsonException("Cannot generate binding plan for " + type.getName(), e);
+        }
+    }
+
+    /**
+     * 属性的类型可能引用到自己，所以等这个计划登记好之后再解析
+     */
+    void resolveProperties() {
+        for (Property property : properties.values()) {
+            property.plan = BindingPlan.forType(property.genericType);
+        }
+    }
+
+    @Override
+    public Object read(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        Object[] args = byConstructor ? defaults.clone() : new Object[0];
+        Object bean = byConstructor ? null : newInstance(args);
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            Property property = properties.get(reader.nextName());
+            if (property == null) {
+                reader.skipValue();
+                continue;
+            }
+            Object value = property.plan.read(reader);
+            if (value == null && property.rawType.isPrimitive()) {
+                continue;
+            }
+            if (byConstructor) {
+                args[property.index] = value;
+            } else {
+                try {
+                    property.setter.invokeExact(bean, value);
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new JsonException("Failed to set " + type.getName() + "." + property.name, t);
+                }
+            }
+        }
+        reader.endObject();
+        return byConstructor ? newInstance(args) : bean;
+    }
+
+    private Object newInstance(Object[] args) {
+        try {
+            return constructor.invokeExact(args);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new JsonException("Failed to instantiate " + type.getName(), t);
+        }
+    }
+
+    /**
+     * 无参构造器 > 唯一的构造器 > 参数最多的构造器
+     */
+    private static Constructor<?> determineConstructor(Class<?> type) {
+        Constructor<?>[] ctors = type.getDeclaredConstructors();
+        Constructor<?> candidate = null;
+        for (Constructor<?> ctor : ctors) {
+            if (ctor.getParameterTypes().length == 0) {
+                return ctor;
+            }
+            if (candidate == null || ctor.getParameterTypes().length > candidate.getParameterTypes().length) {
+                candidate = ctor;
+            }
+        }
+        if (candidate == null) {
+            throw new JsonException("No constructor in " + type.getName());
+        }
+        if (type.getEnclosingClass() != null && !Modifier.isStatic(type.getModifiers())) {
+            throw new JsonException("Cannot bind JSON to inner class " + type.getName() + ", make it static");
+        }
+        return candidate;
+    }
+
+    /**
+     * 有-parameters编译出来的参数名就用，否则按字段声明顺序对应，类型也要对得上
+     */
+    private static String[] parameterNames(Constructor<?> ctor) {
+        Parameter[] parameters = ctor.getParameters();
+        String[] names = new String[parameters.length];
+        if (parameters[0].isNamePresent()) {
+            for (int i = 0; i < parameters.length; i++) {
+                names[i] = parameters[i].getName();
+            }
+            return names;
+        }
+        List<Field> fields = new ArrayList<Field>();
+        for (Field field : ctor.getDeclaringClass().getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) {
+                fields.add(field);
+            }
+        }
+        Class<?>[] paramTypes = ctor.getParameterTypes();
+        boolean matches = fields.size() == paramTypes.length;
+        for (int i = 0; matches && i < paramTypes.length; i++) {
+            matches = fields.get(i).getType() == paramTypes[i];
+            names[i] = matches ? fields.get(i).getName() : null;
+        }
+        if (!matches) {
+            throw new JsonException("Cannot resolve constructor parameter names of "
+                    + ctor.getDeclaringClass().getName()
+                    + ", compile with -parameters or declare fields in constructor order");
+        }
+        return names;
+    }
+
+    /**
+     * 子类的字段在前，static、transient的不绑定
+     */
+    private static List<Field> instanceFields(Class<?> type) {
+        List<Field> fields = new ArrayList<Field>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                    fields.add(field);
+                }
+            }
+        }
+        return fields;
+    }
+
+    private static final class Property {
+
+        private final String name;
+
+        private final Type genericType;
+
+        private final Class<?> rawType;
+
+        //(Object,Object)void，按构造器绑定时为null
+        private final MethodHandle setter;
+
+        //构造器参数的位置，按字段赋值时为-1
+        private final int index;
+
+        private BindingPlan plan;
+
+        Property(String name, Type genericType, Class<?> rawType, MethodHandle setter, int index) {
+            this.name = name;
+            this.genericType = genericType;
+            this.rawType = rawType;
+            this.setter = setter;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package com.zxw.framework.json;
+
+import com.zxw.framework.beans.TypeConverter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 把JSON绑定成某个类型的执行计划，每个类型只生成一次
+ * <p>POJO的字段setter、构造器在生成计划时就解析成MethodHandle，绑定时按记号流一边读一边赋值，
+ * 数组、List的元素读一个绑一个，不会先建一棵树再转换
+ */
+public abstract class BindingPlan {
+
+    private static final ConcurrentMap<Type, BindingPlan> PLANS = new ConcurrentHashMap<Type, BindingPlan>();
+
+    //正在生成的计划，处理 class Node { List<Node> children; } 这种自己引用自己的类型
+    private static final ThreadLocal<Map<Type, BindingPlan>> BUILDING = new ThreadLocal<Map<Type, BindingPlan>>() {
+        @Override
+        protected Map<Type, BindingPlan> initialValue() {
+            return new HashMap<Type, BindingPlan>();
+        }
+    };
+
+    /**
+     * @param type 可以带泛型，比如List&lt;User&gt;，取自Method.getGenericParameterTypes
+     */
+    public static BindingPlan forType(Type type) {
+        BindingPlan plan = PLANS.get(type);
+        if (plan != null) {
+            return plan;
+        }
+        Map<Type, BindingPlan> building = BUILDING.get();
+        plan = building.get(type);
+        if (plan != null) {
+            return plan;
+        }
+        //整组计划都生成好了才放进缓存，别的线程拿不到半成品
+        boolean outermost = building.isEmpty();
+        try {
+            plan = create(type, building);
+            building.put(type, plan);
+            if (outermost) {
+                PLANS.putAll(building);
+            }
+            return plan;
+        } finally {
+            if (outermost) {
+                building.clear();
+            }
+        }
+    }
+
+    /**
+     * 绑定整个请求体，请求体为空返回null
+     */
+    public Object read(InputStream in, Charset charset) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, charset));
+        if (reader.peek() == JsonToken.END_DOCUMENT) {
+            return null;
+        }
+        Object value = read(reader);
+        if (reader.peek() != JsonToken.END_DOCUMENT) {
+            throw reader.syntaxError("Unexpected data after the end of document");
+        }
+        return value;
+    }
+
+    /**
+     * 读一个值，JSON里的null返回null
+     */
+    public abstract Object read(JsonReader reader) throws IOException;
+
+    private static BindingPlan create(Type type, Map<Type, BindingPlan> building) {
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Class<?> raw = (Class<?>) parameterized.getRawType();
+            Type[] args = parameterized.getActualTypeArguments();
+            if (Map.class.isAssignableFrom(raw)) {
+                return new MapPlan(raw, rawClass(args[0]), forType(args[1]));
+            } else if (Collection.class.isAssignableFrom(raw)) {
+                return new CollectionPlan(raw, forType(args[0]));
+            }
+            return create(raw, building);
+        } else if (type instanceof GenericArrayType) {
+            Type component = ((GenericArrayType) type).getGenericComponentType();
+            return new ArrayPlan(rawClass(component), forType(component));
+        } else if (type instanceof WildcardType) {
+            return forType(((WildcardType) type).getUpperBounds()[0]);
+        } else if (!(type instanceof Class)) {
+            //类型变量之类的，按Object处理
+            return forType(Object.class);
+        }
+
+        Class<?> clazz = (Class<?>) type;
+        if (clazz == Object.class) {
+            return new UntypedPlan();
+        } else if (ScalarPlan.supports(clazz)) {
+            return new ScalarPlan(clazz);
+        } else if (clazz.isArray()) {
+            return new ArrayPlan(clazz.getComponentType(), forType(clazz.getComponentType()));
+        } else if (Map.class.isAssignableFrom(clazz)) {
+            return new MapPlan(clazz, String.class, forType(Object.class));
+        } else if (Collection.class.isAssignableFrom(clazz)) {
+            return new CollectionPlan(clazz, forType(Object.class));
+        } else if (clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers())) {
+            throw new JsonException("Cannot bind JSON to abstract type " + clazz.getName());
+        }
+        BeanBindingPlan plan = new BeanBindingPlan(clazz);
+        //先登记再解析属性，属性里引用到自己时能拿到这个计划
+        building.put(clazz, plan);
+        plan.resolveProperties();
+        return plan;
+    }
+
+    private static Class<?> rawClass(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        } else if (type instanceof GenericArrayType) {
+            return Array.newInstance(rawClass(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        }
+        return Object.class;
+    }
+
+    /**
+     * 字符串、数字、布尔、枚举
+     */
+    static final class ScalarPlan extends BindingPlan {
+
+        private final Class<?> type;
+
+        ScalarPlan(Class<?> type) {
+            this.type = type;
+        }
+
+        static boolean supports(Class<?> type) {
+            return type.isPrimitive() || type == String.class || type == Integer.class || type == Long.class
+                    || type == Double.class || type == Float.class || type == Short.class || type == Byte.class
+                    || type == Boolean.class || type == Character.class || type == BigDecimal.class
+                    || type == BigInteger.class || type.isEnum();
+        }
+
+        @Override
+        public Object read(JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            if (type == String.class) {
+                return reader.nextString();
+            } else if (type == int.class || type == Integer.class) {
+                long value = reader.nextLong();
+                if (value != (int) value) {
+                    throw reader.syntaxError("Integer overflow " + value);
+                }
+                return (int) value;
+            } else if (type == long.class || type == Long.class) {
+                return reader.nextLong();
+            } else if (type == double.class || type == Double.class) {
+                return reader.nextDouble();
+            } else if (type == float.class || type == Float.class) {
+                return (float) reader.nextDouble();
+            } else if (type == boolean.class || type == Boolean.class) {
+                return reader.peek() == JsonToken.BOOLEAN ? reader.nextBoolean() : convert(reader);
+            }
+            return convert(reader);
+        }
+
+        private Object convert(JsonReader reader) throws IOException {
+            String text = reader.nextString();
+            try {
+                if (type == BigDecimal.class) {
+                    return new BigDecimal(text);
+                } else if (type == BigInteger.class) {
+                    return new BigInteger(text);
+                }
+                return TypeConverter.convert(type, text);
+            } catch (IllegalArgumentException e) {
+                throw reader.syntaxError("Cannot convert '" + text + "' to " + type.getSimpleName());
+            }
+        }
+    }
+
+    /**
+     * 目标是Object时按JSON本身的类型来：Map、List、String、Long/Double、Boolean
+     */
+    static final class UntypedPlan extends BindingPlan {
+
+        @Override
+        public Object read(JsonReader reader) throws IOException {
+            switch (reader.peek()) {
+                case BEGIN_OBJECT:
+                    Map<String, Object> map = new LinkedHashMap<String, Object>();
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        map.put(reader.nextName(), read(reader));
+                    }
+                    reader.endObject();
+                    return map;
+                case BEGIN_ARRAY:
+                    List<Object> list = new ArrayList<Object>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        list.add(read(reader));
+                    }
+                    reader.endArray();
+                    return list;
+                case STRING:
+                    return reader.nextString();
+                case NUMBER:
+                    String number = reader.nextString();
+                    if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+                        try {
+                            return Long.valueOf(number);
+                        } catch (NumberFormatException e) {
+                            return new BigInteger(number);
+                        }
+                    }
+                    double value = Double.parseDouble(number);
+                    if (Double.isInfinite(value)) {
+                        throw reader.syntaxError("Number " + number + " is out of range");
+                    }
+                    return value;
+                case BOOLEAN:
+                    return reader.nextBoolean();
+                case NULL:
+                    reader.nextNull();
+                    return null;
+                default:
+                    throw reader.syntaxError("Unexpected " + reader.peek());
+            }
+        }
+    }
+
+    static final class CollectionPlan extends BindingPlan {
+
+        private final Class<?> type;
+
+        private final BindingPlan elementPlan;
+
+        CollectionPlan(Class<?> type, BindingPlan elementPlan) {
+            this.type = type;
+            this.elementPlan = elementPlan;
+        }
+
+        @Override
+        public Object read(JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            Collection<Object> collection = newCollection();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                collection.add(elementPlan.read(reader));
+            }
+            reader.endArray();
+            return collection;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Collection<Object> newCollection() {
+            if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+                if (SortedSet.class.isAssignableFrom(type)) {
+                    return new TreeSet<Object>();
+                } else if (Set.class.isAssignableFrom(type)) {
+                    return new LinkedHashSet<Object>();
+                } else if (Queue.class.isAssignableFrom(type)) {
+                    return new ArrayDeque<Object>();
+                }
+                return new ArrayList<Object>();
+            }
+            try {
+                return (Collection<Object>) type.getDeclaredConstructor().newInstance();
+            } catch (Exception e) {
+                throw new JsonException("Cannot create " + type.getName(), e);
+            }
+        }
+    }
+
+    static final class MapPlan extends BindingPlan {
+
+        private final Class<?> type;
+
+        private final Class<?> keyType;
+
+        private final BindingPlan valuePlan;
+
+        MapPlan(Class<?> type, Class<?> keyType, BindingPlan valuePlan) {
+            this.type = type;
+            this.keyType = keyType;
+            this.valuePlan = valuePlan;
+        }
+
+        @Override
+        public Object read(JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            Map<Object, Object> map = newMap();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                Object key;
+                try {
+                    key = TypeConverter.convert(keyType, name);
+                } catch (IllegalArgumentException e) {
+                    throw reader.syntaxError("Cannot convert key '" + name + "' to " + keyType.getSimpleName());
+                }
+                map.put(key, valuePlan.read(reader));
+            }
+            reader.endObject();
+            return map;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map<Object, Object> newMap() {
+            if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+                if (SortedMap.class.isAssignableFrom(type)) {
+                    return new TreeMap<Object, Object>();
+                }
+                return new LinkedHashMap<Object, Object>();
+            }
+            try {
+                return (Map<Object, Object>) type.getDeclaredConstructor().newInstance();
+            } catch (Exception e) {
+                throw new JsonException("Cannot create " + type.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * int[]、long[]、double[]直接往基本类型数组里填，不装箱；其他数组先放进List再拷贝
+     */
+    static final class ArrayPlan extends BindingPlan {
+
+        private final Class<?> componentType;
+
+        private final BindingPlan elementPlan;
+
+        ArrayPlan(Class<?> componentType, BindingPlan elementPlan) {
+            this.componentType = componentType;
+            this.elementPlan = elementPlan;
+        }
+
+        @Override
+        public Object read(JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            reader.beginArray();
+            Object array;
+            if (componentType == int.class) {
+                array = readInts(reader);
+            } else if (componentType == long.class) {
+                array = readLongs(reader);
+            } else if (componentType == double.class) {
+                array = readDoubles(reader);
+            } else {
+                List<Object> elements = new ArrayList<Object>();
+                while (reader.hasNext()) {
+                    Object element = elementPlan.read(reader);
+                    if (element == null && componentType.isPrimitive()) {
+                        throw reader.syntaxError("Null element in " + componentType.getName() + "[]");
+                    }
+                    elements.add(element);
+                }
+                array = Array.newInstance(componentType, elements.size());
+                for (int i = 0; i < elements.size(); i++) {
+                    Array.set(array, i, elements.get(i));
+                }
+            }
+            reader.endArray();
+            return array;
+        }
+
+        private int[] readInts(JsonReader reader) throws IOException {
+            int[] values = new int[16];
+            int size = 0;
+            while (reader.hasNext()) {
+                long value = reader.nextLong();
+                if (value != (int) value) {
+                    throw reader.syntaxError("Integer overflow " + value);
+                }
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size << 1);
+                }
+                values[size++] = (int) value;
+            }
+            return Arrays.copyOf(values, size);
+        }
+
+        private long[] readLongs(JsonReader reader) throws IOException {
+            long[] values = new long[16];
+            int size = 0;
+            while (reader.hasNext()) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size << 1);
+                }
+                values[size++] = reader.nextLong();
+            }
+            return Arrays.copyOf(values, size);
+        }
+
+        private double[] readDoubles(JsonReader reader) throws IOException {
+            double[] values = new double[16];
+            int size = 0;
+            while (reader.hasNext()) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size << 1);
+                }
+                values[size++] = reader.nextDouble();
+            }
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.zxw.framework.json;
+
+/**
+ * JSON格式不对，或者值没法绑定到目标类型
+ */
+public class JsonException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public JsonException(String message) {
+        super(message);
+    }
+
+    public JsonException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,564 @@
+package com.zxw.framework.json;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 流式的JSON读取器，一边从Reader读一边切记号，不会把整个文档读进内存，也不建中间的树
+ * <p>用法和Gson的JsonReader类似：peek看下一个记号，beginObject/nextName/nextString...依次消费
+ * <p>只在一个线程上用，不是线程安全的
+ */
+public class JsonReader {
+
+    private static final int MAX_DEPTH = 256;
+
+    //栈里每一层当前的状态
+    private static final int EMPTY_DOCUMENT = 0;
+
+    private static final int NONEMPTY_DOCUMENT = 1;
+
+    private static final int EMPTY_ARRAY = 2;
+
+    private static final int NONEMPTY_ARRAY = 3;
+
+    private static final int EMPTY_OBJECT = 4;
+
+    //读完了name，等着读值
+    private static final int DANGLING_NAME = 5;
+
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private final Reader in;
+
+    private final char[] buffer = new char[8192];
+
+    private int pos;
+
+    private int limit;
+
+    //buffer之前已经读过的字符数，报错时算位置
+    private long consumed;
+
+    private final int[] stack = new int[MAX_DEPTH + 1];
+
+    private int stackSize = 1;
+
+    //peek出来还没消费的记号
+    private JsonToken peeked;
+
+    //拼字符串、数字时复用
+    private final StringBuilder scratch = new StringBuilder();
+
+    public JsonReader(Reader in) {
+        this.in = in;
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    public JsonToken peek() throws IOException {
+        if (peeked == null) {
+            peeked = doPeek();
+        }
+        return peeked;
+    }
+
+    public void beginObject() throws IOException {
+        expect(JsonToken.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(JsonToken.END_OBJECT);
+        stackSize--;
+    }
+
+    public void beginArray() throws IOException {
+        expect(JsonToken.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(JsonToken.END_ARRAY);
+        stackSize--;
+    }
+
+    /**
+     * 当前对象或数组里还有没有元素
+     */
+    public boolean hasNext() throws IOException {
+        JsonToken token = peek();
+        return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+    }
+
+    public String nextName() throws IOException {
+        expect(JsonToken.NAME);
+        return readString();
+    }
+
+    /**
+     * 字符串，数字和布尔值也按原文返回
+     */
+    public String nextString() throws IOException {
+        JsonToken token = peek();
+        if (token == JsonToken.STRING) {
+            peeked = null;
+            return readString();
+        } else if (token == JsonToken.NUMBER) {
+            peeked = null;
+            return readNumber().toString();
+        } else if (token == JsonToken.BOOLEAN) {
+            return String.valueOf(nextBoolean());
+        }
+        throw syntaxError("Expected STRING but was " + token);
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(JsonToken.BOOLEAN);
+        if (buffer[pos] == 't') {
+            readLiteral("true");
+            return true;
+        }
+        readLiteral("false");
+        return false;
+    }
+
+    public void nextNull() throws IOException {
+        expect(JsonToken.NULL);
+        readLiteral("null");
+    }
+
+    /**
+     * 整数直接在字符上累加，不创建String；带小数点、指数或者太长的才退回到parse
+     */
+    public long nextLong() throws IOException {
+        JsonToken token = peek();
+        if (token == JsonToken.STRING) {
+            peeked = null;
+            return parseLong(readString());
+        }
+        if (token != JsonToken.NUMBER) {
+            throw syntaxError("Expected NUMBER but was " + token);
+        }
+        peeked = null;
+        StringBuilder number = readNumber();
+        int length = number.length();
+        boolean negative = number.charAt(0) == '-';
+        int start = negative ? 1 : 0;
+        //18位以内的整数不会溢出
+        if (length - start > 0 && length - start <= 18) {
+            long value = 0;
+            for (int i = start; i < length; i++) {
+                char c = number.charAt(i);
+                if (c < '0' || c > '9') {
+                    return parseLong(number.toString());
+                }
+                value = value * 10 + (c - '0');
+            }
+            return negative ? -value : value;
+        }
+        return parseLong(number.toString());
+    }
+
+    public double nextDouble() throws IOException {
+        JsonToken token = peek();
+        if (token == JsonToken.STRING) {
+            peeked = null;
+            return parseDouble(readString());
+        }
+        if (token != JsonToken.NUMBER) {
+            throw syntaxError("Expected NUMBER but was " + token);
+        }
+        peeked = null;
+        return parseDouble(readNumber().toString());
+    }
+
+    /**
+     * 跳过下一个值，对象和数组整个跳过，不创建字符串
+     */
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            JsonToken token = peek();
+            switch (token) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    depth++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    depth--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    depth--;
+                    break;
+                case NAME:
+                case STRING:
+                    peeked = null;
+                    skipString();
+                    break;
+                case NUMBER:
+                    peeked = null;
+                    readNumber();
+                    break;
+                case BOOLEAN:
+                    nextBoolean();
+                    break;
+                case NULL:
+                    nextNull();
+                    break;
+                default:
+                    throw syntaxError("Unexpected end of input");
+            }
+        } while (depth > 0);
+    }
+
+    /**
+     * 当前位置，从0开始数的字符数
+     */
+    public long getPosition() {
+        return consumed + pos;
+    }
+
+    public JsonException syntaxError(String message) {
+        return new JsonException(message + " at position " + getPosition());
+    }
+
+    private void expect(JsonToken expected) throws IOException {
+        JsonToken token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+        peeked = null;
+    }
+
+    private void push(int state) {
+        if (stackSize > MAX_DEPTH) {
+            throw syntaxError("Nesting too deep");
+        }
+        stack[stackSize++] = state;
+    }
+
+    /**
+     * 处理好逗号、冒号，返回下一个记号
+     * <p>字符串和名字的开头引号会被消费掉，其他记号停在第一个字符上
+     */
+    private JsonToken doPeek() throws IOException {
+        int top = stack[stackSize - 1];
+        if (top == EMPTY_ARRAY) {
+            stack[stackSize - 1] = NONEMPTY_ARRAY;
+        } else if (top == NONEMPTY_ARRAY) {
+            int c = nextNonWhitespace();
+            if (c == ']') {
+                return JsonToken.END_ARRAY;
+            } else if (c != ',') {
+                throw syntaxError("Expected ',' or ']'");
+            }
+        } else if (top == EMPTY_OBJECT || top == NONEMPTY_OBJECT) {
+            stack[stackSize - 1] = DANGLING_NAME;
+            int c = nextNonWhitespace();
+            if (top == NONEMPTY_OBJECT) {
+                if (c == '}') {
+                    return JsonToken.END_OBJECT;
+                } else if (c != ',') {
+                    throw syntaxError("Expected ',' or '}'");
+                }
+                c = nextNonWhitespace();
+            }
+            if (c == '"') {
+                return JsonToken.NAME;
+            } else if (c == '}' && top == EMPTY_OBJECT) {
+                return JsonToken.END_OBJECT;
+            }
+            throw syntaxError("Expected name");
+        } else if (top == DANGLING_NAME) {
+            stack[stackSize - 1] = NONEMPTY_OBJECT;
+            if (nextNonWhitespace() != ':') {
+                throw syntaxError("Expected ':'");
+            }
+        } else if (top == EMPTY_DOCUMENT) {
+            stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+        } else if (top == NONEMPTY_DOCUMENT) {
+            if (nextNonWhitespace() == -1) {
+                return JsonToken.END_DOCUMENT;
+            }
+            throw syntaxError("Unexpected data after the end of document");
+        }
+
+        int c = nextNonWhitespace();
+        switch (c) {
+            case -1:
+                if (top == EMPTY_DOCUMENT) {
+                    return JsonToken.END_DOCUMENT;
+                }
+                throw syntaxError("Unexpected end of input");
+            case ']':
+                if (top == EMPTY_ARRAY) {
+                    return JsonToken.END_ARRAY;
+                }
+                throw syntaxError("Unexpected ']'");
+            case '{':
+                return JsonToken.BEGIN_OBJECT;
+            case '[':
+                return JsonToken.BEGIN_ARRAY;
+            case '"':
+                return JsonToken.STRING;
+            case 't':
+            case 'f':
+                pos--;
+                return JsonToken.BOOLEAN;
+            case 'n':
+                pos--;
+                return JsonToken.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    pos--;
+                    return JsonToken.NUMBER;
+                }
+                //位置报在这个字符上
+                pos--;
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    /**
+     * 开头的引号已经消费掉了；没有转义的字符串直接从buffer截取
+     */
+    private String readString() throws IOException {
+        scratch.setLength(0);
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos++];
+                if (c == '"') {
+                    if (scratch.length() == 0) {
+                        return new String(buffer, start, pos - start - 1);
+                    }
+                    scratch.append(buffer, start, pos - start - 1);
+                    return scratch.toString();
+                } else if (c == '\\') {
+                    scratch.append(buffer, start, pos - start - 1);
+                    scratch.append(readEscape());
+                    start = pos;
+                } else if (c < 0x20) {
+                    throw syntaxError("Unescaped control character in string");
+                }
+            }
+            scratch.append(buffer, start, pos - start);
+            if (!fill(1)) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            while (pos < limit) {
+                char c = buffer[pos++];
+                if (c == '"') {
+                    return;
+                } else if (c == '\\') {
+                    readEscape();
+                }
+            }
+            if (!fill(1)) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        if (pos == limit && !fill(1)) {
+            throw syntaxError("Unterminated escape sequence");
+        }
+        char c = buffer[pos++];
+        switch (c) {
+            case 'u':
+                if (pos + 4 > limit && !fill(4)) {
+                    throw syntaxError("Unterminated escape sequence");
+                }
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(buffer[pos++], 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid \\u escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case '"':
+            case '\\':
+            case '/':
+                return c;
+            default:
+                throw syntaxError("Invalid escape sequence '\\" + c + "'");
+        }
+    }
+
+    /**
+     * 数字的原文放在scratch里，下一次读字符串、数字时会被覆盖
+     */
+    private StringBuilder readNumber() throws IOException {
+        scratch.setLength(0);
+        while (true) {
+            while (pos < limit) {
+                char c = buffer[pos];
+                if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                    scratch.append(c);
+                    pos++;
+                } else {
+                    return checkNumber();
+                }
+            }
+            if (!fill(1)) {
+                return checkNumber();
+            }
+        }
+    }
+
+    /**
+     * 按RFC 8259的语法检查：-? (0 | [1-9][0-9]*) (.[0-9]+)? ([eE][+-]?[0-9]+)?
+     * <p>出错时报告第一个不合法字符的位置，01、1.、.5、1-2、1e这些都不接受
+     */
+    private StringBuilder checkNumber() {
+        int length = scratch.length();
+        int i = 0;
+        if (i < length && scratch.charAt(i) == '-') {
+            i++;
+        }
+        if (i < length && scratch.charAt(i) == '0') {
+            i++;
+        } else {
+            int start = i;
+            i = skipDigits(i);
+            if (i == start) {
+                throw numberError(i);
+            }
+        }
+        if (i < length && scratch.charAt(i) == '.') {
+            int start = ++i;
+            i = skipDigits(i);
+            if (i == start) {
+                throw numberError(i);
+            }
+        }
+        if (i < length && (scratch.charAt(i) == 'e' || scratch.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (scratch.charAt(i) == '+' || scratch.charAt(i) == '-')) {
+                i++;
+            }
+            int start = i;
+            i = skipDigits(i);
+            if (i == start) {
+                throw numberError(i);
+            }
+        }
+        if (i < length) {
+            throw numberError(i);
+        }
+        return scratch;
+    }
+
+    private int skipDigits(int i) {
+        while (i < scratch.length() && scratch.charAt(i) >= '0' && scratch.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 数字已经读完了，按它在原文里的位置报错
+     */
+    private JsonException numberError(int index) {
+        long position = getPosition() - scratch.length() + index;
+        return new JsonException("Invalid number '" + scratch + "' at position " + position);
+    }
+
+    private void readLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (pos == limit && !fill(1)) {
+                throw syntaxError("Unexpected end of input");
+            }
+            if (buffer[pos++] != literal.charAt(i)) {
+                throw syntaxError("Expected '" + literal + "'");
+            }
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            while (pos < limit) {
+                char c = buffer[pos++];
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    return c;
+                }
+            }
+            if (!fill(1)) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * 保证buffer里至少还有minimum个没读的字符，读到流结束也不够就返回false
+     */
+    private boolean fill(int minimum) throws IOException {
+        if (pos > 0) {
+            consumed += pos;
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        while (limit < minimum) {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read == -1) {
+                return false;
+            }
+            limit += read;
+        }
+        return true;
+    }
+
+    private long parseLong(String text) {
+        try {
+            return Long.parseLong(text.trim());
+        } catch (NumberFormatException e) {
+            //1.0、1e3这种也算整数
+            double value = parseDouble(text);
+            //(double) Long.MAX_VALUE是2^63，已经超出long了
+            if (value != Math.rint(value) || value >= (double) Long.MAX_VALUE || value < (double) Long.MIN_VALUE) {
+                throw syntaxError("Expected an integer but was " + text);
+            }
+            return (long) value;
+        }
+    }
+
+    /**
+     * 1e400这种超出double范围的会变成Infinity，当成错误；字符串里的NaN、Infinity也不接受
+     */
+    private double parseDouble(String text) {
+        double value;
+        try {
+            value = Double.parseDouble(text.trim());
+        } catch (NumberFormatException e) {
+            throw syntaxError("Invalid number " + text);
+        }
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw syntaxError("Number " + text + " is out of range");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,8 @@
+package com.zxw.framework.json;
+
+/**
+ * JsonReader.peek()返回的下一个记号
+ */
+public enum JsonToken {
+    BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+}
@@ -0,0 +1,26 @@
+package com.zxw.framework.logging;
+
+/**
+ * 访问日志，一个请求一行：时间 ACCESS 客户端 方法 路由 状态码 字节数 耗时
+ * <p>和框架日志走同一个AsyncAppender，请求线程只填字段
+ */
+public final class AccessLog {
+
+    private AccessLog() {
+    }
+
+    public static boolean isEnabled() {
+        return LogManager.isAccessEnabled();
+    }
+
+    public static void record(String method, String route, int status, long latencyNanos, long bytes,
+            String client) {
+        if (!LogManager.isAccessEnabled()) {
+            return;
+        }
+        AsyncAppender appender = LogManager.getAppender();
+        if (appender != null) {
+            appender.access(method, route, status, latencyNanos, bytes, client);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.zxw.framework.logging;
+
+import com.zxw.framework.concurrent.BatchEventProcessor;
+import com.zxw.framework.concurrent.EventHandler;
+import com.zxw.framework.concurrent.RingBuffer;
+import com.zxw.framework.concurrent.WaitStrategies;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 唯一的日志后台线程，框架日志和访问日志都从这里写出去
+ * <p>生产者用tryNext抢槽位，抢不到就丢弃计数；消费者一次取一批，格式化到复用的StringBuilder，
+ * 编码进LogOutput的大块缓冲区，一批结束才flush一次
+ */
+final class AsyncAppender {
+
+    private final RingBuffer<LogRecord> ringBuffer;
+
+    private final BatchEventProcessor<LogRecord> processor;
+
+    private final Thread thread;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    //其他线程换输出目标时先放这里，由日志线程在下一条日志前换上，output本身只有日志线程访问
+    private volatile LogOutput pendingOutput;
+
+    //下面的字段只有日志线程访问
+    private LogOutput output;
+
+    private final StringBuilder line = new StringBuilder(512);
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+    //同一秒内的日志共用一个时间前缀
+    private long cachedSecond = -1;
+
+    private String cachedDate;
+
+    private long reportedDropped;
+
+    /**
+     * @param bufferSize 必须是2的幂
+     */
+    AsyncAppender(int bufferSize, LogOutput output) {
+        this.output = output;
+        this.ringBuffer = new RingBuffer<LogRecord>(bufferSize, new Supplier<LogRecord>() {
+            @Override
+            public LogRecord get() {
+                return new LogRecord();
+            }
+        }, WaitStrategies.of("sleeping"));
+        this.processor = new BatchEventProcessor<LogRecord>(ringBuffer, new EventHandler<LogRecord>() {
+            @Override
+            public void onEvent(LogRecord record, long sequence, boolean endOfBatch) {
+                write(record, endOfBatch);
+            }
+        });
+        this.thread = new Thread(processor, "log-appender");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    void log(Level level, String logger, String message, int argCount, Object arg0, Object arg1, Object arg2,
+            Throwable throwable) {
+        long sequence = ringBuffer.tryNext();
+        if (sequence < 0) {
+            dropped.incrementAndGet();
+            return;
+        }
+        LogRecord record = ringBuffer.get(sequence);
+        record.kind = LogRecord.KIND_LOG;
+        record.timestamp = System.currentTimeMillis();
+        record.thread = Thread.currentThread().getName();
+        record.level = level;
+        record.logger = logger;
+        record.message = message;
+        record.argCount = argCount;
+        record.arg0 = arg0;
+        record.arg1 = arg1;
+        record.arg2 = arg2;
+        record.throwable = throwable;
+        ringBuffer.publish(sequence);
+    }
+
+    void access(String method, String route, int status, long latencyNanos, long bytes, String client) {
+        long sequence = ringBuffer.tryNext();
+        if (sequence < 0) {
+            dropped.incrementAndGet();
+            return;
+        }
+        LogRecord record = ringBuffer.get(sequence);
+        record.kind = LogRecord.KIND_ACCESS;
+        record.timestamp = System.currentTimeMillis();
+        record.method = method;
+        record.route = route;
+        record.status = status;
+        record.latencyNanos = latencyNanos;
+        record.bytes = bytes;
+        record.client = client;
+        ringBuffer.publish(sequence);
+    }
+
+    /**
+     * 换输出目标，旧的在日志线程上写完后关闭
+     */
+    void setOutput(LogOutput output) {
+        this.pendingOutput = output;
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * 已经进入缓冲区的日志写完再停
+     */
+    void close() {
+        processor.halt();
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LogOutput next = pendingOutput;
+        if (next != null) {
+            next.close();
+        }
+        output.close();
+    }
+
+    private void write(LogRecord record, boolean endOfBatch) {
+        LogOutput next = pendingOutput;
+        if (next != null) {
+            pendingOutput = null;
+            output.close();
+            output = next;
+        }
+        line.setLength(0);
+        try {
+            if (record.kind == LogRecord.KIND_ACCESS) {
+                formatAccess(record);
+            } else {
+                formatLog(record);
+            }
+        } catch (RuntimeException e) {
+            //参数的toString出错也不能让日志线程停下来
+            line.append(" [format failed: ").append(e).append("]\n");
+        } finally {
+            record.clear();
+        }
+        try {
+            output.append(line);
+            if (endOfBatch) {
+                reportDropped();
+                output.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Log output failed: " + e);
+        }
+    }
+
+    private void formatLog(LogRecord record) {
+        appendTimestamp(record.timestamp);
+        line.append(' ').append(record.level.name());
+        if (record.level.name().length() == 4) {
+            line.append(' ');
+        }
+        line.append(" [").append(record.thread).append("] ").append(record.logger).append(" - ");
+        appendMessage(record);
+        line.append('\n');
+        if (record.throwable != null) {
+            StringWriter trace = new StringWriter();
+            record.throwable.printStackTrace(new PrintWriter(trace));
+            line.append(trace.getBuffer());
+        }
+    }
+
+    /**
+     * 时间 ACCESS 客户端 方法 路由 状态码 字节数 耗时ms
+     */
+    private void formatAccess(LogRecord record) {
+        appendTimestamp(record.timestamp);
+        line.append(" ACCESS ").append(record.client).append(' ').append(record.method).append(' ')
+                .append(record.route).append(' ').append(record.status).append(' ').append(record.bytes).append(' ');
+        long micros = record.latencyNanos / 1000;
+        line.append(micros / 1000).append('.');
+        appendPadded(micros % 1000, 3);
+        line.append("ms\n");
+    }
+
+    private void appendTimestamp(long timestamp) {
+        long second = timestamp / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedDate = dateFormat.format(new Date(second * 1000));
+        }
+        line.append(cachedDate).append('.');
+        appendPadded(timestamp % 1000, 3);
+    }
+
+    private void appendPadded(long value, int width) {
+        for (long bound = 10; width > 1; width--, bound *= 10) {
+            if (value < bound) {
+                line.append('0');
+            }
+        }
+        line.append(value);
+    }
+
+    /**
+     * 把消息里的{}依次替换成参数，多余的{}原样保留
+     */
+    private void appendMessage(LogRecord record) {
+        String message = record.message;
+        if (message == null) {
+            line.append("null");
+            return;
+        }
+        int start = 0;
+        for (int i = 0; i < record.argCount; i++) {
+            int index = message.indexOf("{}", start);
+            if (index < 0) {
+                break;
+            }
+            line.append(message, start, index).append(i == 0 ? record.arg0 : i == 1 ? record.arg1 : record.arg2);
+            start = index + 2;
+        }
+        line.append(message, start, message.length());
+    }
+
+    /**
+     * 一批写完时顺便报告这段时间丢了多少条
+     */
+    private void reportDropped() throws IOException {
+        long current = dropped.get();
+        if (current == reportedDropped) {
+            return;
+        }
+        line.setLength(0);
+        appendTimestamp(System.currentTimeMillis());
+        line.append(" WARN  [").append(thread.getName()).append("] ").append(AsyncAppender.class.getName())
+                .append(" - ").append(current - reportedDropped).append(" log records dropped, buffer is full\n");
+        reportedDropped = current;
+        output.append(line);
+    }
+}
@@ -0,0 +1,5 @@
+package com.zxw.framework.logging;
+
+public enum Level {
+    DEBUG, INFO, WARN, ERROR
+}
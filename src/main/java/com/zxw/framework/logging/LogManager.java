@@ -0,0 +1,106 @@
+package com.zxw.framework.logging;
+
+import com.zxw.framework.config.Environment;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * 全局的日志配置，所有Logger和AccessLog共用一个AsyncAppender
+ * <p>第一次打日志时先输出到控制台，没有父容器的容器refresh时按logging.*重新配置
+ * <p>没有ContextLoaderListener时每个DispatcherServlet都有自己的顶层容器，所以按引用计数管理，
+ * 最后一个容器close时才停掉，之后的日志直接丢掉，不再创建线程，避免重新部署时泄漏
+ */
+public final class LogManager {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static volatile Level threshold = Level.INFO;
+
+    private static volatile boolean accessEnabled = true;
+
+    private static volatile AsyncAppender appender;
+
+    //调用了configure还没有shutdown的容器数，由LogManager.class保护
+    private static int users;
+
+    //最后一个容器已经shutdown
+    private static volatile boolean stopped;
+
+    private LogManager() {
+    }
+
+    /**
+     * logging.level 最低输出级别，默认INFO
+     * <p>logging.file 日志文件，不配就输出到控制台；logging.maxFileSize、logging.maxFiles控制滚动
+     * <p>logging.access.enabled 是否记录访问日志
+     * <p>每次调用都要有一次shutdown和它配对
+     */
+    public static synchronized void configure(Environment environment) {
+        users++;
+        stopped = false;
+        threshold = Level.valueOf(environment.getProperty("logging.level", "INFO").trim().toUpperCase());
+        accessEnabled = Boolean.parseBoolean(environment.getProperty("logging.access.enabled", "true"));
+        String file = environment.getProperty("logging.file", "").trim();
+        LogOutput output;
+        if ("".equals(file)) {
+            output = LogOutput.console();
+        } else {
+            try {
+                output = LogOutput.file(Paths.get(file),
+                        Long.parseLong(environment.getProperty("logging.maxFileSize", "10485760")),
+                        Integer.parseInt(environment.getProperty("logging.maxFiles", "5")));
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot open log file " + file, e);
+            }
+        }
+        getAppender().setOutput(output);
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(threshold) >= 0;
+    }
+
+    static boolean isAccessEnabled() {
+        return accessEnabled;
+    }
+
+    /**
+     * 缓冲区满了丢掉的日志条数
+     */
+    public static long getDroppedCount() {
+        AsyncAppender current = appender;
+        return current == null ? 0 : current.getDroppedCount();
+    }
+
+    /**
+     * 和configure配对，最后一个调用的写完缓冲区里的日志后停止
+     */
+    public static synchronized void shutdown() {
+        if (users > 0 && --users > 0) {
+            return;
+        }
+        stopped = true;
+        AsyncAppender current = appender;
+        if (current != null) {
+            appender = null;
+            current.close();
+        }
+    }
+
+    /**
+     * @return 已经停止时返回null
+     */
+    static AsyncAppender getAppender() {
+        AsyncAppender current = appender;
+        if (current != null || stopped) {
+            return current;
+        }
+        synchronized (LogManager.class) {
+            if (appender == null && !stopped) {
+                appender = new AsyncAppender(BUFFER_SIZE, LogOutput.console());
+            }
+            return appender;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.zxw.framework.logging;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * 日志最终写到哪里：控制台或者按大小滚动的文件
+ * <p>先编码进一块大的直接内存，满了或者一批结束才真正写一次，只在日志线程上使用
+ */
+final class LogOutput {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final Path file;
+
+    private final long maxFileSize;
+
+    private final int maxFiles;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+    private WritableByteChannel channel;
+
+    private long size;
+
+    private LogOutput(Path file, long maxFileSize, int maxFiles, WritableByteChannel channel) throws IOException {
+        this.file = file;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        this.channel = channel;
+        if (channel instanceof FileChannel) {
+            this.size = ((FileChannel) channel).size();
+        }
+    }
+
+    static LogOutput console() {
+        try {
+            return new LogOutput(null, Long.MAX_VALUE, 0,
+                    Channels.newChannel(new FileOutputStream(java.io.FileDescriptor.out)));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param maxFileSize 超过这个大小就滚动
+     * @param maxFiles    保留的历史文件个数，file.1是最新的
+     */
+    static LogOutput file(Path file, long maxFileSize, int maxFiles) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        return new LogOutput(file, maxFileSize, maxFiles, openFile(file));
+    }
+
+    void append(CharSequence text) throws IOException {
+        CharBuffer in = CharBuffer.wrap(text);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(in, buffer, true);
+            if (result.isOverflow()) {
+                flush();
+                continue;
+            }
+            if (encoder.flush(buffer).isOverflow()) {
+                flush();
+                continue;
+            }
+            return;
+        }
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            size += channel.write(buffer);
+        }
+        buffer.clear();
+        if (file != null && size >= maxFileSize) {
+            rotate();
+        }
+    }
+
+    void close() {
+        try {
+            flush();
+            if (file != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Log output close failed: " + e);
+        }
+    }
+
+    private void rotate() throws IOException {
+        channel.close();
+        if (maxFiles > 0) {
+            Files.deleteIfExists(sibling(maxFiles));
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                Path source = sibling(i);
+                if (Files.exists(source)) {
+                    Files.move(source, sibling(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file, sibling(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(file);
+        }
+        channel = openFile(file);
+        size = 0;
+    }
+
+    private Path sibling(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private static FileChannel openFile(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,65 @@
+package com.zxw.framework.logging;
+
+/**
+ * RingBuffer里预先分配好的一条日志，字段固定，生产者只填值不格式化
+ * <p>框架日志和访问日志共用一个结构，用kind区分
+ */
+final class LogRecord {
+    
+    static final int KIND_LOG = 0;
+    
+    static final int KIND_ACCESS = 1;
+    
+    int kind;
+    
+    long timestamp;
+    
+    String thread;
+    
+    //框架日志
+    Level level;
+    
+    String logger;
+    
+    String message;
+    
+    int argCount;
+    
+    Object arg0;
+    
+    Object arg1;
+    
+    Object arg2;
+    
+    Throwable throwable;
+    
+    //访问日志
+    String method;
+    
+    String route;
+    
+    int status;
+    
+    long latencyNanos;
+    
+    long bytes;
+    
+    String client;
+    
+    /**
+     * 槽位会被复用，处理完清掉引用
+     */
+    void clear() {
+        thread = null;
+        level = null;
+        logger = null;
+        message = null;
+        arg0 = null;
+        arg1 = null;
+        arg2 = null;
+        throwable = null;
+        method = null;
+        route = null;
+        client = null;
+    }
+}
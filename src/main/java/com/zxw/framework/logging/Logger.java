@@ -0,0 +1,100 @@
+package com.zxw.framework.logging;
+
+/**
+ * 框架日志
+ * <p>调用线程只判断级别、把消息模板和参数填进RingBuffer的槽位，不拼字符串也不碰磁盘，
+ * 格式化和写文件都在AsyncAppender的后台线程上做；缓冲区满了直接丢弃并计数，不会阻塞调用方
+ * <p>消息里的{}按顺序替换成参数，参数在后台线程上才toString，不要传之后还会被修改的对象；
+ * 参数个数固定的重载是为了避免可变参数每次创建数组
+ */
+public final class Logger {
+
+    private final String name;
+
+    private Logger(String name) {
+        this.name = name;
+    }
+
+    public static Logger getLogger(Class<?> clazz) {
+        return new Logger(clazz.getName());
+    }
+
+    public boolean isDebugEnabled() {
+        return LogManager.isEnabled(Level.DEBUG);
+    }
+
+    public void debug(String message) {
+        log(Level.DEBUG, message, 0, null, null, null, null);
+    }
+
+    public void debug(String message, Object arg) {
+        log(Level.DEBUG, message, 1, arg, null, null, null);
+    }
+
+    public void debug(String message, Object arg0, Object arg1) {
+        log(Level.DEBUG, message, 2, arg0, arg1, null, null);
+    }
+
+    public void info(String message) {
+        log(Level.INFO, message, 0, null, null, null, null);
+    }
+
+    public void info(String message, Object arg) {
+        log(Level.INFO, message, 1, arg, null, null, null);
+    }
+
+    public void info(String message, Object arg0, Object arg1) {
+        log(Level.INFO, message, 2, arg0, arg1, null, null);
+    }
+
+    public void info(String message, Object arg0, Object arg1, Object arg2) {
+        log(Level.INFO, message, 3, arg0, arg1, arg2, null);
+    }
+
+    public void warn(String message) {
+        log(Level.WARN, message, 0, null, null, null, null);
+    }
+
+    public void warn(String message, Object arg) {
+        log(Level.WARN, message, 1, arg, null, null, null);
+    }
+
+    public void warn(String message, Object arg0, Object arg1) {
+        log(Level.WARN, message, 2, arg0, arg1, null, null);
+    }
+
+    public void warn(String message, Throwable throwable) {
+        log(Level.WARN, message, 0, null, null, null, throwable);
+    }
+
+    public void warn(String message, Object arg, Throwable throwable) {
+        log(Level.WARN, message, 1, arg, null, null, throwable);
+    }
+
+    public void error(String message) {
+        log(Level.ERROR, message, 0, null, null, null, null);
+    }
+
+    public void error(String message, Object arg) {
+        log(Level.ERROR, message, 1, arg, null, null, null);
+    }
+
+    public void error(String message, Throwable throwable) {
+        log(Level.ERROR, message, 0, null, null, null, throwable);
+    }
+
+    public void error(String message, Object arg, Throwable throwable) {
+        log(Level.ERROR, message, 1, arg, null, null, throwable);
+    }
+
+    private void log(Level level, String message, int argCount, Object arg0, Object arg1, Object arg2,
+            Throwable throwable) {
+        if (!LogManager.isEnabled(level)) {
+            return;
+        }
+        AsyncAppender appender = LogManager.getAppender();
+        if (appender != null) {
+            appender.log(level, name, message, argCount, arg0, arg1, arg2, throwable);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.zxw.framework.scheduling;
+
+import java.time.LocalDateTime;
+import java.util.BitSet;
+
+/**
+ * 6位cron表达式：秒 分 时 日 月 周
+ * <p>支持 * ? 数字 a-b a/n a-b/n 以及逗号分隔的列表，月和周也可以写JAN、MON这样的英文缩写；
+ * 周的0和7都表示周日
+ * <p>注意：日和周同时限定时按AND处理，两个条件都要满足；标准cron（Vixie cron）是OR，满足一个就触发。
+ * 比如 0 0 0 13 * FRI 在这里只在13号又是周五时触发，标准cron是每个13号和每个周五都触发。
+ * 只想按其中一个算时，另一个写 * 或 ?
+ */
+public class CronExpression {
+    
+    private static final String[] MONTHS = {"JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT",
+            "NOV", "DEC"};
+    
+    private static final String[] DAYS_OF_WEEK = {"SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT"};
+    
+    //最多往后找这么多年，找不到说明表达式永远不会触发，比如2月30号
+    private static final int MAX_YEARS = 5;
+    
+    private final String expression;
+    
+    private final BitSet seconds = new BitSet(60);
+    
+    private final BitSet minutes = new BitSet(60);
+    
+    private final BitSet hours = new BitSet(24);
+    
+    private final BitSet daysOfMonth = new BitSet(32);
+    
+    private final BitSet months = new BitSet(13);
+    
+    private final BitSet daysOfWeek = new BitSet(8);
+    
+    public CronExpression(String expression) {
+        this.expression = expression;
+        String[] fields = expression.trim().split("\\s+");
+        if (fields.length != 6) {
+            throw new IllegalArgumentException("Cron expression must have 6 fields: " + expression);
+        }
+        parseField(fields[0], seconds, 0, 59, null);
+        parseField(fields[1], minutes, 0, 59, null);
+        parseField(fields[2], hours, 0, 23, null);
+        parseField(fields[3], daysOfMonth, 1, 31, null);
+        parseField(fields[4], months, 1, 12, MONTHS);
+        parseField(fields[5], daysOfWeek, 0, 7, DAYS_OF_WEEK);
+        //7和0都是周日
+        if (daysOfWeek.get(7)) {
+            daysOfWeek.set(0);
+            daysOfWeek.clear(7);
+        }
+    }
+    
+    /**
+     * 严格晚于after的下一次触发时间，找不到返回null
+     */
+    public LocalDateTime next(LocalDateTime after) {
+        LocalDateTime t = after.withNano(0).plusSeconds(1);
+        LocalDateTime limit = after.plusYears(MAX_YEARS);
+        while (t.isBefore(limit)) {
+            if (!months.get(t.getMonthValue())) {
+                t = t.withDayOfMonth(1).toLocalDate().atStartOfDay().plusMonths(1);
+            } else if (!daysOfMonth.get(t.getDayOfMonth()) || !daysOfWeek.get(t.getDayOfWeek().getValue() % 7)) {
+                t = t.toLocalDate().atStartOfDay().plusDays(1);
+            } else if (!hours.get(t.getHour())) {
+                t = t.withMinute(0).withSecond(0).plusHours(1);
+            } else if (!minutes.get(t.getMinute())) {
+                t = t.withSecond(0).plusMinutes(1);
+            } else if (!seconds.get(t.getSecond())) {
+                t = t.plusSeconds(1);
+            } else {
+                return t;
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public String toString() {
+        return expression;
+    }
+    
+    private void parseField(String field, BitSet bits, int min, int max, String[] names) {
+        for (String part : field.split(",")) {
+            int step = 1;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = Integer.parseInt(part.substring(slash + 1));
+                part = part.substring(0, slash);
+                if (step <= 0) {
+                    throw new IllegalArgumentException("Illegal step in cron expression: " + expression);
+                }
+            }
+            int start;
+            int end;
+            if ("*".equals(part) || "?".equals(part)) {
+                start = min;
+                end = max;
+            } else if (part.indexOf('-') > 0) {
+                int dash = part.indexOf('-');
+                start = parseValue(part.substring(0, dash), names, min);
+                end = parseValue(part.substring(dash + 1), names, min);
+            } else {
+                start = parseValue(part, names, min);
+                //a/n 表示从a开始每隔n
+                end = slash >= 0 ? max : start;
+            }
+            if (start < min || end > max || start > end) {
+                throw new IllegalArgumentException("Value out of range in cron expression: " + expression);
+            }
+            for (int i = start; i <= end; i += step) {
+                bits.set(i);
+            }
+        }
+    }
+    
+    private int parseValue(String value, String[] names, int min) {
+        if (names != null) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equalsIgnoreCase(value)) {
+                    return i + min;
+                }
+            }
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Illegal value '" + value + "' in cron expression: " + expression);
+        }
+    }
+}
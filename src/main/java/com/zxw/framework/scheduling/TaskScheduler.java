@@ -0,0 +1,211 @@
+package com.zxw.framework.scheduling;
+
+import com.zxw.framework.annotation.Scheduled;
+import com.zxw.framework.concurrent.HashedWheelTimer;
+import com.zxw.framework.logging.Logger;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 执行@Scheduled方法
+ * <p>什么时候触发由时间轮决定，真正执行交给有界线程池；
+ * 上一次还没执行完又到了触发时间就跳过这一次（overrun），线程池满了也跳过，都会打印出来
+ */
+public class TaskScheduler {
+
+    private static final Logger logger = Logger.getLogger(TaskScheduler.class);
+
+    private final HashedWheelTimer timer;
+
+    private final ThreadPoolExecutor workers;
+
+    private volatile boolean shutdown;
+
+    /**
+     * @param poolSize      执行任务的线程数
+     * @param queueCapacity 等待执行的任务最多多少个
+     * @param tickMillis    时间轮一格的时间，也就是调度精度
+     * @param ticksPerWheel 时间轮一圈的格子数
+     */
+    public TaskScheduler(int poolSize, int queueCapacity, long tickMillis, int ticksPerWheel) {
+        this.timer = new HashedWheelTimer("scheduler-timer", tickMillis, TimeUnit.MILLISECONDS, ticksPerWheel);
+        final AtomicInteger count = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "scheduler-worker-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * 找出bean上所有的@Scheduled方法并开始调度
+     *
+     * @return 找到的方法个数
+     */
+    public int registerScheduledMethods(Object bean) {
+        int count = 0;
+        for (Method method : bean.getClass().getMethods()) {
+            Scheduled scheduled = method.getAnnotation(Scheduled.class);
+            if (scheduled == null) {
+                continue;
+            }
+            if (method.getParameterTypes().length != 0 || Modifier.isStatic(method.getModifiers())) {
+                throw new IllegalStateException("@Scheduled method must be a no-arg instance method: " + method);
+            }
+            ScheduledTask task;
+            try {
+                method.setAccessible(true);
+                MethodHandle invoker = MethodHandles.lookup().unreflect(method).bindTo(bean)
+                        .asType(MethodType.methodType(void.class));
+                task = new ScheduledTask(method.getDeclaringClass().getSimpleName() + "." + method.getName(),
+                        invoker, scheduled);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot access @Scheduled method " + method, e);
+            }
+            task.start();
+            count++;
+        }
+        return count;
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        timer.stop();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(5, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 一个@Scheduled方法
+     */
+    private final class ScheduledTask implements Runnable {
+
+        private final String name;
+
+        //()void，已经绑定了bean
+        private final MethodHandle invoker;
+
+        private final long fixedRate;
+
+        private final long fixedDelay;
+
+        private final long initialDelay;
+
+        private final CronExpression cron;
+
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        private final AtomicInteger overruns = new AtomicInteger();
+
+        ScheduledTask(String name, MethodHandle invoker, Scheduled scheduled) {
+            this.name = name;
+            this.invoker = invoker;
+            this.fixedRate = scheduled.fixedRate();
+            this.fixedDelay = scheduled.fixedDelay();
+            this.initialDelay = scheduled.initialDelay();
+            this.cron = "".equals(scheduled.cron().trim()) ? null : new CronExpression(scheduled.cron());
+            int kinds = (cron != null ? 1 : 0) + (fixedRate > 0 ? 1 : 0) + (fixedDelay > 0 ? 1 : 0);
+            if (kinds != 1) {
+                throw new IllegalStateException("Exactly one of cron, fixedRate, fixedDelay is required on " + name);
+            }
+        }
+
+        void start() {
+            if (cron != null) {
+                scheduleNextCron();
+            } else {
+                scheduleAfter(initialDelay);
+            }
+        }
+
+        /**
+         * 时间轮线程上触发，只负责把任务丢进线程池
+         */
+        void fire() {
+            if (shutdown) {
+                return;
+            }
+            //固定频率不管执行多久都按时排下一次
+            if (fixedRate > 0) {
+                scheduleAfter(fixedRate);
+            } else if (cron != null) {
+                scheduleNextCron();
+            }
+
+            if (!running.compareAndSet(false, true)) {
+                logger.warn("Scheduled task {} overrun, skipped {} times", name, overruns.incrementAndGet());
+                return;
+            }
+            try {
+                workers.execute(this);
+            } catch (RejectedExecutionException e) {
+                running.set(false);
+                logger.warn("Scheduled task {} rejected, worker pool is full", name);
+                if (fixedDelay > 0) {
+                    scheduleAfter(fixedDelay);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                invoker.invokeExact();
+            } catch (Throwable t) {
+                logger.error("Scheduled task {} failed", name, t);
+            } finally {
+                running.set(false);
+                //固定延迟在执行完之后才排下一次
+                if (fixedDelay > 0) {
+                    scheduleAfter(fixedDelay);
+                }
+            }
+        }
+
+        private void scheduleAfter(long delayMillis) {
+            if (shutdown) {
+                return;
+            }
+            try {
+                timer.newTimeout(new Runnable() {
+                    @Override
+                    public void run() {
+                        fire();
+                    }
+                }, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (IllegalStateException e) {
+                //已经shutdown
+            }
+        }
+
+        private void scheduleNextCron() {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime next = cron.next(now);
+            if (next == null) {
+                logger.warn("Scheduled task {} will never fire: {}", name, cron);
+                return;
+            }
+            scheduleAfter(Duration.between(now, next).toMillis());
+        }
+    }
+}
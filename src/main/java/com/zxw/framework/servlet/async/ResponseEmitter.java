@@ -0,0 +1,134 @@
+package com.zxw.framework.servlet.async;
+
+import com.zxw.framework.logging.Logger;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller返回它，就可以在别的线程里一条一条往客户端推数据
+ * <p>数据先放进有界缓冲区，由共享的写线程池取出来写给客户端；缓冲区满了send会阻塞，这就是背压
+ * <p>客户端断开后isClosed()返回true，send抛IllegalStateException，onClose注册的回调会被调用
+ */
+public class ResponseEmitter {
+    
+    private static final Logger logger = Logger.getLogger(ResponseEmitter.class);
+    
+    private final BlockingQueue<Object> buffer;
+    
+    private final List<Runnable> closeCallbacks = new CopyOnWriteArrayList<Runnable>();
+    
+    private volatile boolean completed;
+    
+    private volatile boolean closed;
+    
+    //写线程挂上来之后，有新数据就通知它
+    private volatile Runnable drainTrigger;
+    
+    public ResponseEmitter() {
+        this(256);
+    }
+    
+    public ResponseEmitter(int bufferSize) {
+        this.buffer = new ArrayBlockingQueue<Object>(bufferSize);
+    }
+    
+    /**
+     * 缓冲区满了就一直等，直到有空位或者客户端断开
+     */
+    public void send(Object data) throws InterruptedException {
+        while (!send(data, 100, TimeUnit.MILLISECONDS)) {
+            checkOpen();
+        }
+    }
+    
+    /**
+     * @return 等到超时缓冲区还是满的，返回false
+     */
+    public boolean send(Object data, long timeout, TimeUnit unit) throws InterruptedException {
+        checkOpen();
+        if (!buffer.offer(data, timeout, unit)) {
+            return false;
+        }
+        signal();
+        return true;
+    }
+    
+    /**
+     * 数据发完了，缓冲区里剩下的写完之后结束响应
+     */
+    public void complete() {
+        completed = true;
+        signal();
+    }
+    
+    public boolean isClosed() {
+        return closed;
+    }
+    
+    public void onClose(Runnable callback) {
+        closeCallbacks.add(callback);
+    }
+    
+    /**
+     * 一条数据写到响应里的格式，默认一行一条
+     */
+    protected String format(Object data) {
+        return data + "\n";
+    }
+    
+    protected String getContentType() {
+        return "text/plain;charset=UTF-8";
+    }
+    
+    Object poll() {
+        return buffer.poll();
+    }
+    
+    boolean hasPending() {
+        return completed || !buffer.isEmpty();
+    }
+    
+    boolean isExhausted() {
+        return completed && buffer.isEmpty();
+    }
+    
+    void attach(Runnable drainTrigger) {
+        this.drainTrigger = drainTrigger;
+        signal();
+    }
+    
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        buffer.clear();
+        for (Runnable callback : closeCallbacks) {
+            try {
+                callback.run();
+            } catch (Exception e) {
+                logger.warn("Emitter close callback failed", e);
+            }
+        }
+    }
+    
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Response stream is closed");
+        }
+        if (completed) {
+            throw new IllegalStateException("Response emitter is already completed");
+        }
+    }
+    
+    private void signal() {
+        Runnable trigger = drainTrigger;
+        if (trigger != null) {
+            trigger.run();
+        }
+    }
+}
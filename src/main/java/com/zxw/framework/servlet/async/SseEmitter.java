@@ -0,0 +1,36 @@
+package com.zxw.framework.servlet.async;
+
+/**
+ * Server-Sent Events，一条数据就是一个event
+ */
+public class SseEmitter extends ResponseEmitter {
+    
+    public SseEmitter() {
+        super();
+    }
+    
+    public SseEmitter(int bufferSize) {
+        super(bufferSize);
+    }
+    
+    @Override
+    protected String format(Object data) {
+        return formatEvent(data);
+    }
+    
+    @Override
+    protected String getContentType() {
+        return "text/event-stream;charset=UTF-8";
+    }
+    
+    /**
+     * 多行数据每行都要加data:，空行表示一个event结束
+     */
+    static String formatEvent(Object data) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : String.valueOf(data).split("\r?\n", -1)) {
+            sb.append("data: ").append(line).append('\n');
+        }
+        return sb.append('\n').toString();
+    }
+}
@@ -0,0 +1,352 @@
+package com.zxw.framework.servlet.async;
+
+import com.zxw.framework.logging.Logger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.BaseStream;
+
+/**
+ * 处理Iterator、Stream、ResponseEmitter这几种返回值，把元素一个个推给客户端
+ * <p>请求进入Servlet异步模式后立刻释放容器线程，写数据由少量共享线程完成，
+ * 每个流同一时刻最多占一个线程，每次最多写batchSize条就让出线程，长连接不会各自占住一个线程
+ * <p>没有Content-Length，容器会用chunked编码；SseEmitter或者Accept: text/event-stream时按SSE格式写
+ */
+public class StreamingResponseHandler {
+
+    private static final Logger logger = Logger.getLogger(StreamingResponseHandler.class);
+
+    private final ExecutorService executor;
+
+    private final int batchSize;
+
+    private final long asyncTimeout;
+
+    /**
+     * @param threads      写数据的线程数
+     * @param batchSize    每次调度最多写多少条再flush
+     * @param asyncTimeout 异步请求超时时间，毫秒，0表示不超时
+     */
+    public StreamingResponseHandler(int threads, int batchSize, long asyncTimeout) {
+        final AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "stream-writer-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.batchSize = batchSize;
+        this.asyncTimeout = asyncTimeout;
+    }
+
+    public boolean supports(Object returnValue) {
+        return returnValue instanceof Iterator || returnValue instanceof BaseStream
+                || returnValue instanceof ResponseEmitter;
+    }
+
+    /**
+     * 按声明的返回类型判断，这些返回值只能用一次
+     */
+    public static boolean supportsType(Class<?> returnType) {
+        return Iterator.class.isAssignableFrom(returnType) || BaseStream.class.isAssignableFrom(returnType)
+                || ResponseEmitter.class.isAssignableFrom(returnType);
+    }
+
+    public void handle(HttpServletRequest req, HttpServletResponse resp, Object returnValue) throws IOException {
+        Source source = toSource(returnValue);
+        boolean sse = returnValue instanceof SseEmitter || acceptsEventStream(req);
+        if (returnValue instanceof ResponseEmitter) {
+            resp.setContentType(((ResponseEmitter) returnValue).getContentType());
+        } else {
+            resp.setContentType(sse ? "text/event-stream;charset=UTF-8" : "text/plain;charset=UTF-8");
+        }
+        if (sse) {
+            resp.setHeader("Cache-Control", "no-cache");
+        }
+
+        if (!req.isAsyncSupported()) {
+            //不支持异步（比如web.xml没开async-supported），只能在当前线程写完
+            Subscription subscription = new Subscription(null, resp.getWriter(), source, sse);
+            subscription.drainBlocking();
+            return;
+        }
+
+        //有超时的处理方法已经在异步线程上执行了，接着用它的AsyncContext
+        AsyncContext asyncContext = req.isAsyncStarted() ? req.getAsyncContext() : req.startAsync(req, resp);
+        asyncContext.setTimeout(asyncTimeout);
+        final Subscription subscription = new Subscription(asyncContext, resp.getWriter(), source, sse);
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                subscription.cancel();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                subscription.cancel();
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        subscription.start();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private boolean acceptsEventStream(HttpServletRequest req) {
+        String accept = req.getHeader("Accept");
+        return accept != null && accept.contains("text/event-stream");
+    }
+
+    private Source toSource(Object returnValue) {
+        if (returnValue instanceof ResponseEmitter) {
+            return new EmitterSource((ResponseEmitter) returnValue);
+        } else if (returnValue instanceof BaseStream) {
+            return new IteratorSource(((BaseStream<?, ?>) returnValue).iterator(), (BaseStream<?, ?>) returnValue);
+        }
+        return new IteratorSource((Iterator<?>) returnValue, null);
+    }
+
+    /**
+     * 一个正在写的流
+     */
+    private final class Subscription implements Runnable {
+
+        private final AsyncContext asyncContext;
+
+        private final PrintWriter writer;
+
+        private final Source source;
+
+        private final boolean sse;
+
+        //保证同一个流同一时刻只有一个线程在写
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        Subscription(AsyncContext asyncContext, PrintWriter writer, Source source, boolean sse) {
+            this.asyncContext = asyncContext;
+            this.writer = writer;
+            this.source = source;
+            this.sse = sse;
+        }
+
+        void start() {
+            source.attach(new Runnable() {
+                @Override
+                public void run() {
+                    schedule();
+                }
+            });
+            schedule();
+        }
+
+        void schedule() {
+            if (done.get() || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                cancel();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!writeBatch()) {
+                    return;
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            //放开scheduled之后再看一次，避免生产者刚好在这之间放了数据却没能调度
+            if (source.hasPending()) {
+                schedule();
+            }
+        }
+
+        void drainBlocking() {
+            while (writeBatch()) {
+                if (!source.hasPending()) {
+                    //同步模式下Emitter只能等生产者
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                }
+            }
+        }
+
+        /**
+         * @return false表示流已经结束
+         */
+        private boolean writeBatch() {
+            if (done.get()) {
+                return false;
+            }
+            try {
+                int written = 0;
+                Object element;
+                while (written < batchSize && (element = source.poll()) != null) {
+                    writer.write(format(element));
+                    written++;
+                }
+                if (written > 0) {
+                    writer.flush();
+                    //PrintWriter不抛IOException，客户端断开只能这样发现
+                    if (writer.checkError()) {
+                        cancel();
+                        return false;
+                    }
+                }
+                if (source.isExhausted()) {
+                    finish();
+                    return false;
+                }
+                return true;
+            } catch (Exception e) {
+                logger.warn("Streaming response failed", e);
+                cancel();
+                return false;
+            }
+        }
+
+        private String format(Object element) {
+            if (source instanceof EmitterSource) {
+                return ((EmitterSource) source).emitter.format(element);
+            }
+            return sse ? SseEmitter.formatEvent(element) : element + "\n";
+        }
+
+        void cancel() {
+            finish();
+        }
+
+        private void finish() {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            source.close();
+            if (asyncContext != null) {
+                try {
+                    asyncContext.complete();
+                } catch (IllegalStateException e) {
+                    //已经超时或者出错结束了
+                }
+            }
+        }
+    }
+
+    /**
+     * 统一Iterator和ResponseEmitter的取数方式
+     */
+    private interface Source {
+
+        //没有可写的数据返回null
+        Object poll();
+
+        //还有数据可写或者需要结束
+        boolean hasPending();
+
+        boolean isExhausted();
+
+        void attach(Runnable drainTrigger);
+
+        void close();
+    }
+
+    /**
+     * Iterator是拉模式，写多少取多少，天然有背压；hasNext阻塞的话会占住写线程
+     */
+    private static final class IteratorSource implements Source {
+
+        private final Iterator<?> iterator;
+
+        private final BaseStream<?, ?> stream;
+
+        IteratorSource(Iterator<?> iterator, BaseStream<?, ?> stream) {
+            this.iterator = iterator;
+            this.stream = stream;
+        }
+
+        @Override
+        public Object poll() {
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+
+        @Override
+        public boolean hasPending() {
+            return true;
+        }
+
+        @Override
+        public boolean isExhausted() {
+            return !iterator.hasNext();
+        }
+
+        @Override
+        public void attach(Runnable drainTrigger) {
+        }
+
+        @Override
+        public void close() {
+            if (stream != null) {
+                stream.close();
+            }
+        }
+    }
+
+    private static final class EmitterSource implements Source {
+
+        private final ResponseEmitter emitter;
+
+        EmitterSource(ResponseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public Object poll() {
+            return emitter.poll();
+        }
+
+        @Override
+        public boolean hasPending() {
+            return emitter.hasPending();
+        }
+
+        @Override
+        public boolean isExhausted() {
+            return emitter.isExhausted();
+        }
+
+        @Override
+        public void attach(Runnable drainTrigger) {
+            emitter.attach(drainTrigger);
+        }
+
+        @Override
+        public void close() {
+            emitter.close();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.zxw.framework.servlet.support;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * 统计响应体写了多少字节，给访问日志用
+ * <p>getWriter按UTF-8估算字节数，getOutputStream按实际字节数；包装对象第一次调用时才创建
+ */
+public class CountingResponseWrapper extends HttpServletResponseWrapper {
+
+    private volatile long bytes;
+
+    private PrintWriter writer;
+
+    private ServletOutputStream outputStream;
+
+    public CountingResponseWrapper(HttpServletResponse response) {
+        super(response);
+    }
+
+    public long getBytesWritten() {
+        return bytes;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            writer = new PrintWriter(new CountingWriter(super.getWriter()));
+        }
+        return writer;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+            outputStream = new CountingOutputStream(super.getOutputStream());
+        }
+        return outputStream;
+    }
+
+    private final class CountingWriter extends Writer {
+
+        private final Writer target;
+
+        CountingWriter(Writer target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            target.write(c);
+            bytes += utf8Length((char) c);
+        }
+
+        @Override
+        public void write(char[] buf, int off, int len) throws IOException {
+            target.write(buf, off, len);
+            long count = 0;
+            for (int i = off; i < off + len; i++) {
+                count += utf8Length(buf[i]);
+            }
+            bytes += count;
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            target.write(str, off, len);
+            long count = 0;
+            for (int i = off; i < off + len; i++) {
+                count += utf8Length(str.charAt(i));
+            }
+            bytes += count;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            target.close();
+        }
+
+        /**
+         * 代理对的两半各算2个字节，合起来正好是4个
+         */
+        private int utf8Length(char c) {
+            if (c < 0x80) {
+                return 1;
+            } else if (c < 0x800 || Character.isSurrogate(c)) {
+                return 2;
+            }
+            return 3;
+        }
+    }
+
+    private final class CountingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream target;
+
+        CountingOutputStream(ServletOutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+            bytes += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            target.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return target.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            target.setWriteListener(writeListener);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.zxw.framework.servlet.support;
+
+import com.zxw.framework.concurrent.HashedWheelTimer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 处理方法超时后中断执行它的线程
+ * <p>时间轮到期时先CAS到EXPIRING再interrupt，最后置为EXPIRED；请求线程执行完用CAS抢DONE，
+ * 抢不到说明已经超时，要等interrupt做完再清掉中断标记，不能把带着中断标记的线程还给容器
+ * <p>阻塞在Socket读上的线程不响应interrupt，所以还可以给一个到期回调，由它直接给客户端返回超时
+ */
+public final class TimeoutGuard implements Runnable {
+
+    private static final int RUNNING = 0;
+
+    private static final int DONE = 1;
+
+    private static final int EXPIRING = 2;
+
+    private static final int EXPIRED = 3;
+
+    private final Thread thread;
+
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+
+    //到期回调，在时间轮线程上执行，不能阻塞
+    private final Runnable onExpired;
+
+    private HashedWheelTimer.Timeout timeout;
+
+    private TimeoutGuard(Thread thread, Runnable onExpired) {
+        this.thread = thread;
+        this.onExpired = onExpired;
+    }
+
+    /**
+     * delay之后中断当前线程，除非在这之前调用了disarm
+     */
+    public static TimeoutGuard arm(HashedWheelTimer timer, long delay, TimeUnit unit) {
+        return arm(timer, delay, unit, null);
+    }
+
+    /**
+     * delay之后中断当前线程并调用onExpired，除非在这之前调用了disarm
+     */
+    public static TimeoutGuard arm(HashedWheelTimer timer, long delay, TimeUnit unit, Runnable onExpired) {
+        TimeoutGuard guard = new TimeoutGuard(Thread.currentThread(), onExpired);
+        guard.timeout = timer.newTimeout(guard, delay, unit);
+        return guard;
+    }
+
+    /**
+     * 在时间轮线程上执行
+     */
+    @Override
+    public void run() {
+        if (state.compareAndSet(RUNNING, EXPIRING)) {
+            thread.interrupt();
+            state.set(EXPIRED);
+            if (onExpired != null) {
+                onExpired.run();
+            }
+        }
+    }
+
+    /**
+     * 只能在arm的线程上调用
+     *
+     * @return true表示已经超时，线程被中断过
+     */
+    public boolean disarm() {
+        if (state.compareAndSet(RUNNING, DONE)) {
+            timeout.cancel();
+            return false;
+        }
+        while (state.get() == EXPIRING) {
+            Thread.yield();
+        }
+        Thread.interrupted();
+        return true;
+    }
+}
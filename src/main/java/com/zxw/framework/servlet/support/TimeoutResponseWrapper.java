@@ -0,0 +1,238 @@
+package com.zxw.framework.servlet.support;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * 交给有超时的处理方法的响应，超时后它还在跑，之后的写入全部丢掉，不能和504混在一起
+ * <p>每次写入都和expire用同一把锁，expire返回时处理方法不会再写到真正的响应上
+ */
+public class TimeoutResponseWrapper extends HttpServletResponseWrapper {
+
+    private final Object lock = new Object();
+
+    private boolean expired;
+
+    private PrintWriter writer;
+
+    private ServletOutputStream outputStream;
+
+    public TimeoutResponseWrapper(HttpServletResponse response) {
+        super(response);
+    }
+
+    /**
+     * 等正在进行的写入结束，之后的写入全部丢掉
+     */
+    public void expire() {
+        synchronized (lock) {
+            expired = true;
+        }
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        synchronized (lock) {
+            if (writer == null) {
+                writer = new PrintWriter(new GuardedWriter(super.getWriter()));
+            }
+            return writer;
+        }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        synchronized (lock) {
+            if (outputStream == null) {
+                outputStream = new GuardedOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+    }
+
+    @Override
+    public void setStatus(int status) {
+        synchronized (lock) {
+            if (!expired) {
+                super.setStatus(status);
+            }
+        }
+    }
+
+    @Override
+    public void sendError(int status) throws IOException {
+        synchronized (lock) {
+            if (!expired) {
+                super.sendError(status);
+            }
+        }
+    }
+
+    @Override
+    public void sendError(int status, String message) throws IOException {
+        synchronized (lock) {
+            if (!expired) {
+                super.sendError(status, message);
+            }
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        synchronized (lock) {
+            if (!expired) {
+                super.setHeader(name, value);
+            }
+        }
+    }
+
+    @Override
+    public void setContentType(String type) {
+        synchronized (lock) {
+            if (!expired) {
+                super.setContentType(type);
+            }
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        synchronized (lock) {
+            if (!expired) {
+                super.flushBuffer();
+            }
+        }
+    }
+
+    @Override
+    public void resetBuffer() {
+        synchronized (lock) {
+            if (!expired) {
+                super.resetBuffer();
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        synchronized (lock) {
+            if (!expired) {
+                super.reset();
+            }
+        }
+    }
+
+    private final class GuardedWriter extends Writer {
+
+        private final Writer target;
+
+        GuardedWriter(Writer target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            synchronized (lock) {
+                if (!expired) {
+                    target.write(c);
+                }
+            }
+        }
+
+        @Override
+        public void write(char[] buf, int off, int len) throws IOException {
+            synchronized (lock) {
+                if (!expired) {
+                    target.write(buf, off, len);
+                }
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            synchronized (lock) {
+                if (!expired) {
+                    target.write(str, off, len);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (lock) {
+                if (!expired) {
+                    target.flush();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (lock) {
+                if (!expired) {
+                    target.close();
+                }
+            }
+        }
+    }
+
+    private final class GuardedOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream target;
+
+        GuardedOutputStream(ServletOutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            synchronized (lock) {
+                if (!expired) {
+                    target.write(b);
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (lock) {
+                if (!expired) {
+                    target.write(b, off, len);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (lock) {
+                if (!expired) {
+                    target.flush();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (lock) {
+                if (!expired) {
+                    target.close();
+                }
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return target.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            target.setWriteListener(writeListener);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.zxw.framework.servlet.support;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+/**
+ * 预热用的假请求和假响应，用动态代理实现，只支持分发流程里用到的方法
+ * <p>其他方法返回null、0或者false，响应写出的内容直接丢弃
+ */
+public final class WarmUpRequests {
+    
+    private WarmUpRequests() {
+    }
+    
+    /**
+     * 把 a=1&b=2 这样的查询串解析成参数表
+     */
+    public static Map<String, String[]> parseQuery(String query) {
+        Map<String, List<String>> values = new LinkedHashMap<String, List<String>>();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                if (pair.isEmpty()) {
+                    continue;
+                }
+                int eq = pair.indexOf('=');
+                String name = eq < 0 ? pair : pair.substring(0, eq);
+                String value = eq < 0 ? "" : pair.substring(eq + 1);
+                List<String> list = values.get(name);
+                if (list == null) {
+                    list = new ArrayList<String>();
+                    values.put(name, list);
+                }
+                list.add(value);
+            }
+        }
+        Map<String, String[]> params = new LinkedHashMap<String, String[]>();
+        for (Map.Entry<String, List<String>> entry : values.entrySet()) {
+            params.put(entry.getKey(), entry.getValue().toArray(new String[0]));
+        }
+        return params;
+    }
+    
+    public static HttpServletRequest request(final String uri, final Map<String, String[]> params) {
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        final Map<String, String[]> parameterMap = Collections.unmodifiableMap(params);
+        return (HttpServletRequest) Proxy.newProxyInstance(WarmUpRequests.class.getClassLoader(),
+                new Class<?>[] {HttpServletRequest.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if ("getRequestURI".equals(name)) {
+                            return uri;
+                        } else if ("getContextPath".equals(name)) {
+                            return "";
+                        } else if ("getMethod".equals(name)) {
+                            return "GET";
+                        } else if ("getRemoteAddr".equals(name)) {
+                            return "127.0.0.1";
+                        } else if ("getParameterMap".equals(name)) {
+                            return parameterMap;
+                        } else if ("getParameter".equals(name)) {
+                            String[] values = parameterMap.get(args[0]);
+                            return values == null || values.length == 0 ? null : values[0];
+                        } else if ("getParameterValues".equals(name)) {
+                            return parameterMap.get(args[0]);
+                        } else if ("getAttribute".equals(name)) {
+                            return attributes.get(args[0]);
+                        } else if ("setAttribute".equals(name)) {
+                            attributes.put((String) args[0], args[1]);
+                            return null;
+                        } else if ("removeAttribute".equals(name)) {
+                            attributes.remove(args[0]);
+                            return null;
+                        }
+                        return defaultValue(proxy, method, args);
+                    }
+                });
+    }
+    
+    public static HttpServletResponse response() {
+        final PrintWriter writer = new PrintWriter(new DiscardWriter());
+        final int[] status = {HttpServletResponse.SC_OK};
+        return (HttpServletResponse) Proxy.newProxyInstance(WarmUpRequests.class.getClassLoader(),
+                new Class<?>[] {HttpServletResponse.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if ("getWriter".equals(name)) {
+                            return writer;
+                        } else if ("setStatus".equals(name) || "sendError".equals(name)) {
+                            status[0] = (Integer) args[0];
+                            return null;
+                        } else if ("getStatus".equals(name)) {
+                            return status[0];
+                        }
+                        return defaultValue(proxy, method, args);
+                    }
+                });
+    }
+    
+    private static Object defaultValue(Object proxy, Method method, Object[] args) {
+        if ("equals".equals(method.getName()) && args != null && args.length == 1) {
+            return proxy == args[0];
+        } else if ("hashCode".equals(method.getName()) && args == null) {
+            return System.identityHashCode(proxy);
+        } else if ("toString".equals(method.getName()) && args == null) {
+            return "WarmUp" + method.getDeclaringClass().getSimpleName();
+        }
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return Boolean.FALSE;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == char.class) {
+            return (char) 0;
+        } else if (type == double.class) {
+            return 0D;
+        } else if (type == float.class) {
+            return 0F;
+        }
+        return null;
+    }
+    
+    private static final class DiscardWriter extends Writer {
+        
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+        }
+        
+        @Override
+        public void flush() {
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+}
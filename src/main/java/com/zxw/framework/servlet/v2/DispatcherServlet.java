@@ -1,20 +1,45 @@
 package com.zxw.framework.servlet.v2;
 
 import com.zxw.framework.annotation.*;
+import com.zxw.framework.beans.BeanDefinition;
+import com.zxw.framework.beans.TypeConverter;
+import com.zxw.framework.concurrent.Deadline;
+import com.zxw.framework.concurrent.DeadlineExceededException;
+import com.zxw.framework.concurrent.HashedWheelTimer;
+import com.zxw.framework.concurrent.SingleFlight;
+import com.zxw.framework.config.ConfigChangeListener;
+import com.zxw.framework.config.ConfigSnapshot;
+import com.zxw.framework.config.Environment;
+import com.zxw.framework.context.ApplicationContext;
+import com.zxw.framework.json.BindingPlan;
+import com.zxw.framework.json.JsonException;
+import com.zxw.framework.logging.AccessLog;
+import com.zxw.framework.logging.Logger;
+import com.zxw.framework.servlet.async.StreamingResponseHandler;
+import com.zxw.framework.servlet.support.CountingResponseWrapper;
+import com.zxw.framework.servlet.support.TimeoutGuard;
+import com.zxw.framework.servlet.support.TimeoutResponseWrapper;
+import com.zxw.framework.servlet.support.WarmUpRequests;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -26,54 +51,138 @@ import java.util.regex.Pattern;
  */
 public class DispatcherServlet extends HttpServlet {
     
+    private static final Logger logger = Logger.getLogger(DispatcherServlet.class);
     
-    //保存application.properties配置文件中的内容
-    private Properties contextConfig = new Properties();
+    //这个Servlet的容器，有根容器时只放Controller
+    private ApplicationContext context;
     
-    //传说中的IOC容器，我们来揭开它的神秘面纱
-    //为了简化程序，暂时不考虑ConcurrentHashMap
-    // 主要还是关注设计思想和原理
-    private Map<String, Object> ioc = new HashMap<String, Object>();
+    private Environment environment;
     
     //保存url和Method的对应关系
     //思考：为什么不用Map
     //你用Map的话，key，只能是url
     //Handler 本身的功能就是把url和method对应关系，已经具备了Map的功能
     //根据设计原则：冗余的感觉了，单一职责，最少知道原则，帮助我们更好的理解
-    private List<HandlerMapping> handlerMapping = new ArrayList<HandlerMapping>();
+    //懒加载的Controller会在请求线程上追加，读多写少用CopyOnWriteArrayList
+    private List<HandlerMapping> handlerMapping = new CopyOnWriteArrayList<HandlerMapping>();
     
-    //保存扫描的所有的类名
-    private List<String> classNames = new ArrayList<String>();
+    //还没创建的懒加载Controller，启动时只记下类上的@RequestMapping
+    private List<LazyRoute> lazyRoutes = new CopyOnWriteArrayList<LazyRoute>();
+    
+    private volatile boolean hasLazyRoutes;
+    
+    private long initStartNanos;
+    
+    private final AtomicBoolean firstRequestServed = new AtomicBoolean();
+    
+    //@Coalesce的方法，key是url加上参数
+    private SingleFlight<List<Object>, Object> coalescer = new SingleFlight<List<Object>, Object>();
+    
+    //预热结束或者超时后才算就绪，readiness.path返回的就是它
+    private volatile boolean ready;
+    
+    private Thread warmUpThread;
+    
+    //预热超过warmup.timeBudget时强制就绪
+    private HashedWheelTimer.Timeout budgetTimeout;
+    
+    //返回Iterator、Stream、ResponseEmitter的方法，用异步方式推给客户端
+    private StreamingResponseHandler streamingResponseHandler;
+    
+    //所有请求的超时共用一个时间轮
+    private HashedWheelTimer timeoutTimer;
+    
+    //每个请求都要用的配置，配置刷新时由requestConfigListener更新，不用每次去Environment里查、解析
+    private volatile String readinessPath;
+    
+    private volatile String timeoutHeader;
+    
+    private volatile long defaultTimeout;
+    
+    private volatile long maxHeaderTimeout;
+    
+    private ConfigChangeListener requestConfigListener;
     
     /**
      * 初始化Bean 初始化映射关系
-     * <p>1.加载配置文件
-     * <p>2.初始化IOC容器
-     * <p>3.扫描相关的类
-     * <p>5.利用反射，创建实例并保存到容器
-     * <p>6.扫描容器 进行DI操作 给没赋值的赋值
-     * <p>7.URL和Method对应 HandlerMapping
+     * <p>1.初始化IOC容器：加载配置文件、扫描、实例化、DI，见ApplicationContext
+     * <p>2.URL和Method对应 HandlerMapping
+     * <p>3.预热，结束后readiness.path才返回就绪
+     * <p>ServletContext里有ContextLoaderListener创建的根容器时，这里只创建放Controller的子容器，
+     * 没配置contextConfigLocation就和根容器共用配置
      */
     @Override
     public void init(ServletConfig config) throws ServletException {
-        // 加载配置文件
-        doLoadConfig(config.getInitParameter("contextConfigLocation"));
-        //扫描相关的类
-        doScanner(contextConfig.getProperty("scanPackage"));
-        
-        //初始化扫描到的类，并且将它们放入到ICO容器之中
-        doInstance();
-        
-        //完成依赖注入
-        doAutowired();
+        initStartNanos = System.nanoTime();
+        ApplicationContext root = (ApplicationContext) config.getServletContext()
+                .getAttribute(ApplicationContext.ROOT_CONTEXT_ATTRIBUTE);
+        String contextConfigLocation = config.getInitParameter("contextConfigLocation");
+        if (root == null) {
+            context = new ApplicationContext(contextConfigLocation, null, Controller.class, Service.class);
+        } else {
+            context = new ApplicationContext(contextConfigLocation, root, Controller.class);
+        }
+        context.refresh();
+        environment = context.getEnvironment();
+        environment.addRestartOnlyKeys("stream.", "request.timeout.tickDuration", "warmup.");
+        loadRequestConfig(environment.getSnapshot());
+        requestConfigListener = new ConfigChangeListener() {
+            @Override
+            public void onConfigChanged(Set<String> changedKeys, ConfigSnapshot next) {
+                loadRequestConfig(next);
+            }
+        };
+        environment.addListener(requestConfigListener);
         
         //初始化HandlerMapping
         initHandlerMapping();
         
-        System.out.println("Mini Spring framework is init.");
+        streamingResponseHandler = new StreamingResponseHandler(
+                Integer.parseInt(environment.getProperty("stream.threads",
+                        String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                Integer.parseInt(environment.getProperty("stream.batchSize", "64")),
+                Long.parseLong(environment.getProperty("stream.timeout", "0")));
+        
+        //预热的时间预算也靠它，要在预热之前创建
+        timeoutTimer = new HashedWheelTimer("request-timeout",
+                Long.parseLong(environment.getProperty("request.timeout.tickDuration", "10")), TimeUnit.MILLISECONDS,
+                512);
+        
+        //预热，让JIT在接流量之前把分发流程编译好
+        startWarmUp();
+        
+        logger.info("Mini Spring framework is init in {}ms, {} handler mappings, {} lazy controllers",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - initStartNanos), handlerMapping.size(),
+                lazyRoutes.size());
+    }
+    
+    @Override
+    public void destroy() {
+        if (warmUpThread != null) {
+            warmUpThread.interrupt();
+        }
+        if (requestConfigListener != null) {
+            environment.removeListener(requestConfigListener);
+        }
+        if (context != null) {
+            context.close();
+        }
+        if (streamingResponseHandler != null) {
+            streamingResponseHandler.shutdown();
+        }
+        if (timeoutTimer != null) {
+            timeoutTimer.stop();
+        }
     }
     
     
+    private void loadRequestConfig(ConfigSnapshot snapshot) {
+        readinessPath = snapshot.getProperty("readiness.path", "/ready");
+        timeoutHeader = snapshot.getProperty("request.timeout.header", "X-Request-Timeout");
+        defaultTimeout = Long.parseLong(snapshot.getProperty("request.timeout.default", "0"));
+        maxHeaderTimeout = Long.parseLong(snapshot.getProperty("request.timeout.max", "60000"));
+    }
+    
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         this.doPost(req, resp);
@@ -85,201 +194,167 @@ public class DispatcherServlet extends HttpServlet {
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         
-        try {
-            doDispatch(req, resp);
-        } catch (Exception e) {
-            e.printStackTrace();
-            resp.getWriter().write("500 Exection,Detail : " + Arrays.toString(e.getStackTrace()));
-        }
-    }
-    
-    /**
-     * url和handler的关系
-     */
-    private void initHandlerMapping() {
-        if (ioc.isEmpty()) {
-            return;
-        }
+        //后面都用这个，不再重复计算
+        final String url = getRelativeUrl(req);
         
-        for (Map.Entry<String, Object> entry : ioc.entrySet()) {
-            Class<?> clazz = entry.getValue().getClass();
-            
-            if (!clazz.isAnnotationPresent(Controller.class)) {
-                continue;
-            }
-            
-            //保存写在类上面的@RequestMapping("/demo")
-            String baseUrl = "";
-            if (clazz.isAnnotationPresent(RequestMapping.class)) {
-                RequestMapping requestMapping = clazz.getAnnotation(RequestMapping.class);
-                baseUrl = requestMapping.value();
-            }
-            
-            //默认获取所有的public方法
-            for (Method method : clazz.getMethods()) {
-                if (!method.isAnnotationPresent(RequestMapping.class)) {
-                    continue;
-                }
-                
-                RequestMapping requestMapping = method.getAnnotation(RequestMapping.class);
-                //优化
-                // //demo///query
-                String regex = ("/" + baseUrl + "/" + requestMapping.value()).replaceAll("/+", "/");
-                Pattern pattern = Pattern.compile(regex);
-                this.handlerMapping.add(new HandlerMapping(pattern, entry.getValue(), method));
-                System.out.println("Mapped :" + pattern + "," + method);
-                
+        //就绪检查，给负载均衡用
+        if (url.equals(readinessPath)) {
+            if (!ready) {
+                resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
             }
-        }
-    }
-    
-    /**
-     * DI 注入
-     */
-    private void doAutowired() {
-        if (ioc.isEmpty()) {
+            resp.getWriter().write(ready ? "READY" : "WARMING UP");
             return;
         }
         
-        for (Map.Entry<String, Object> entry : ioc.entrySet()) {
-            //Declared 所有的，特定的 字段，包括private/protected/default
-            //正常来说，普通的OOP编程只能拿到public的属性
-            Field[] fields = entry.getValue().getClass().getDeclaredFields();
-            for (Field field : fields) {
-                if (!field.isAnnotationPresent(Autowired.class)) {
-                    continue;
-                }
-                Autowired autowired = field.getAnnotation(Autowired.class);
-                
-                //如果用户没有自定义beanName，默认就根据类型注入
-                //这个地方省去了对类名首字母小写的情况的判断，这个作为课后作业
-                //小伙伴们自己去完善
-                String beanName = autowired.value().trim();
-                if ("".equals(beanName)) {
-                    //获得接口的类型，作为key待会拿这个key到ioc容器中去取值
-                    beanName = field.getType().getName();
-                }
-                
-                //如果是public以外的修饰符，只要加了@Autowired注解，都要强制赋值
-                //反射中叫做暴力访问， 强吻
-                field.setAccessible(true);
-                
-                try {
-                    //用反射机制，动态给字段赋值
-                    field.set(entry.getValue(), ioc.get(beanName));
-                } catch (IllegalAccessException e) {
-                    e.printStackTrace();
-                }
-            }
+        //冷启动指标：从init开始到第一个业务请求，和lazy-init=false时对比
+        if (!firstRequestServed.get() && firstRequestServed.compareAndSet(false, true)) {
+            logger.info("First request {} arrived {}ms after startup", url,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - initStartNanos));
         }
-    }
-    
-    /**
-     * 通过反射 在IOC容器 初始化bean
-     */
-    private void doInstance() {
-        //初始化，为DI做准备
-        if (classNames.isEmpty()) {
+        
+        if (!AccessLog.isEnabled()) {
+            dispatch(req, resp, url);
             return;
         }
         
+        //访问日志：包一层统计字节数，异步请求等真正结束时再记
+        final long start = System.nanoTime();
+        final CountingResponseWrapper counting = new CountingResponseWrapper(resp);
+        final String method = req.getMethod();
         try {
-            for (String className : classNames) {
-                Class<?> clazz = Class.forName(className);
-                
-                //什么样的类才需要初始化呢？
-                //加了注解的类，才初始化，怎么判断？
-                //为了简化代码逻辑，主要体会设计思想，只举例 @Controller和@Service,
-                // @Componment...就一一举例了
-                if (clazz.isAnnotationPresent(Controller.class)) {
-                    Object instance = clazz.newInstance();
-                    //Spring默认类名首字母小写
-                    String beanName = toLowerFirstCase(clazz.getSimpleName());
-                    ioc.put(beanName, instance);
-                } else if (clazz.isAnnotationPresent(Service.class)) {
-                    //service不但要实例化本身 还有接口
-                    //1、自定义的beanName
-                    Service service = clazz.getAnnotation(Service.class);
-                    String beanName = service.value();
-                    //2、默认类名首字母小写
-                    if ("".equals(beanName.trim())) {
-                        beanName = toLowerFirstCase(clazz.getSimpleName());
+            dispatch(req, counting, url);
+        } finally {
+            if (req.isAsyncStarted()) {
+                req.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        AccessLog.record(method, url, counting.getStatus(), System.nanoTime() - start,
+                                counting.getBytesWritten(), req.getRemoteAddr());
                     }
                     
-                    Object instance = clazz.newInstance();
-                    ioc.put(beanName, instance);
-                    //3、根据类型自动赋值,投机取巧的方式
-                    for (Class<?> i : clazz.getInterfaces()) {
-                        if (ioc.containsKey(i.getName())) {
-                            throw new Exception("The “" + i.getName() + "” is exists!!");
-                        }
-                        //把接口的类型直接当成key了
-                        ioc.put(i.getName(), instance);
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
                     }
-                } else {
-                    continue;
-                }
-                
+                    
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+                    
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                AccessLog.record(method, url, counting.getStatus(), System.nanoTime() - start,
+                        counting.getBytesWritten(), req.getRemoteAddr());
             }
+        }
+    }
+    
+    private void dispatch(HttpServletRequest req, HttpServletResponse resp, String url) throws IOException {
+        try {
+            doDispatch(req, resp, url);
         } catch (Exception e) {
-            e.printStackTrace();
+            writeError(resp, url, e);
         }
     }
     
-    /**
-     * 首字母小写
-     */
-    private String toLowerFirstCase(String simpleName) {
-        char[] chars = simpleName.toCharArray();
-        //之所以加，是因为大小写字母的ASCII码相差32，
-        // 而且大写字母的ASCII码要小于小写字母的ASCII码
-        //在Java中，对char做算学运算，实际上就是对ASCII码做算学运算
-        chars[0] += 32;
-        return String.valueOf(chars);
+    private void writeError(HttpServletResponse resp, String url, Exception e) throws IOException {
+        logger.error("Dispatch {} failed", url, e);
+        resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        resp.getWriter().write("500 Exection,Detail : " + Arrays.toString(e.getStackTrace()));
     }
     
     /**
-     * 扫描相关的类,获取类名
-     *
-     * @param scanPackage 扫描的包路径
+     * url和handler的关系
+     * <p>懒加载的Controller这时候还没创建，只登记类上的@RequestMapping，第一次请求匹配到再创建
      */
-    private void doScanner(String scanPackage) {
-        //扫描的地址  包路径转化为文件路径
-        URL url = this.getClass().getClassLoader().getResource("/" + scanPackage.replaceAll("\\.", "/"));
-        File classPath = new File(url.getFile());
-        for (File file : classPath.listFiles()) {
-            if (file.isDirectory()) {
-                doScanner(scanPackage + "." + file.getName());
-            } else {
-                if (!file.getName().endsWith(".class")) {
-                    continue;
-                }
-                String className = (scanPackage + "." + file.getName().replace(".class", ""));
-                classNames.add(className);
+    private void initHandlerMapping() {
+        //父容器里的Controller不归这个Servlet管
+        for (BeanDefinition beanDefinition : context.getBeanDefinitionsWithAnnotation(Controller.class)) {
+            if (!beanDefinition.isLazyInit()) {
+                registerHandlerMappings(context.getBean(beanDefinition.getBeanName()));
+                continue;
+            }
+            Class<?> clazz = beanDefinition.getBeanClass();
+            String baseUrl = clazz.isAnnotationPresent(RequestMapping.class)
+                    ? clazz.getAnnotation(RequestMapping.class).value() : "";
+            lazyRoutes.add(new LazyRoute(baseUrl, beanDefinition.getBeanName()));
+            logger.info("Lazy mapped :{},{}", baseUrl, clazz.getName());
+        }
+        hasLazyRoutes = !lazyRoutes.isEmpty();
+    }
+    
+    private void registerHandlerMappings(Object controller) {
+        Class<?> clazz = controller.getClass();
+        
+        //保存写在类上面的@RequestMapping("/demo")
+        String baseUrl = "";
+        if (clazz.isAnnotationPresent(RequestMapping.class)) {
+            RequestMapping requestMapping = clazz.getAnnotation(RequestMapping.class);
+            baseUrl = requestMapping.value();
+        }
+        
+        //默认获取所有的public方法
+        List<HandlerMapping> mappings = new ArrayList<HandlerMapping>();
+        for (Method method : clazz.getMethods()) {
+            if (!method.isAnnotationPresent(RequestMapping.class)) {
+                continue;
             }
+            
+            RequestMapping requestMapping = method.getAnnotation(RequestMapping.class);
+            //优化
+            // //demo///query
+            String regex = ("/" + baseUrl + "/" + requestMapping.value()).replaceAll("/+", "/");
+            Pattern pattern = Pattern.compile(regex);
+            mappings.add(new HandlerMapping(pattern, controller, method));
+            logger.info("Mapped :{},{}", pattern, method);
+            
         }
+        //一次性加进去，CopyOnWriteArrayList只复制一次
+        this.handlerMapping.addAll(mappings);
     }
     
     /**
-     * 加载配置文件
-     *
-     * @param contextConfigLocation 配置类位置
+     * 创建懒加载的Controller并注册它的HandlerMapping
+     * <p>同一个Controller的并发请求在route上排队，只有第一个去创建，后面的直接用它注册好的
      */
-    private void doLoadConfig(String contextConfigLocation) {
-        try (InputStream fis = this.getClass().getClassLoader().getResourceAsStream(contextConfigLocation);) {
-            contextConfig.load(fis);
-        } catch (Exception e) {
-            e.printStackTrace();
+    private void initLazyRoute(LazyRoute route) {
+        synchronized (route) {
+            if (!lazyRoutes.contains(route)) {
+                return;
+            }
+            long start = System.nanoTime();
+            Object controller = context.getBean(route.beanName);
+            if (controller != null) {
+                registerHandlerMappings(controller);
+            }
+            lazyRoutes.remove(route);
+            hasLazyRoutes = !lazyRoutes.isEmpty();
+            logger.info("Lazy controller {} initialized in {}ms", route.beanName,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
         }
     }
     
-    private void doDispatch(HttpServletRequest req, HttpServletResponse resp) throws Exception {
-        HandlerMapping handler = getHandler(req);
+    /**
+     * @param url 相对路径，调用方算好传进来
+     */
+    private void doDispatch(HttpServletRequest req, HttpServletResponse resp, String url) throws Exception {
+        HandlerMapping handler = getHandler(url);
         if (handler == null) {
+            resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
             resp.getWriter().write("404 Not Found!!!");
             return;
         }
         
+        //调用方给的期限在到达之前就用完了，不用再处理
+        Deadline deadline = resolveDeadline(req, handler);
+        if (deadline != null && deadline.isExpired()) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.getWriter().write("503 Service Unavailable!!! Deadline exceeded before dispatch");
+            return;
+        }
+        
         //从reqest中拿到url传过来的参数
         Map<String, String[]> urlParams = req.getParameterMap();
         
@@ -290,14 +365,13 @@ public class DispatcherServlet extends HttpServlet {
         Object[] paramValues = new Object[methodParamTypes.length];
         
         for (Map.Entry<String, String[]> parm : urlParams.entrySet()) {
-            //值是数组 需要去掉[]
-            String value = Arrays.toString(parm.getValue()).replaceAll("\\[|\\]", "").replaceAll("\\s", ",");
-            
-            if (!handler.paramIndexMapping.containsKey(parm.getKey())) {
+            Integer index = handler.paramIndexMapping.get(parm.getKey());
+            if (index == null) {
                 continue;
             }
-            
-            int index = handler.paramIndexMapping.get(parm.getKey());
+            //同名参数有多个时用逗号连起来
+            String[] values = parm.getValue();
+            String value = values.length == 1 ? values[0] : String.join(",", values);
             paramValues[index] = convert(methodParamTypes[index], value);
         }
         
@@ -311,25 +385,255 @@ public class DispatcherServlet extends HttpServlet {
             paramValues[respIndex] = resp;
         }
         
-        Object returnValue = handler.method.invoke(handler.controller, paramValues);
+        if (handler.paramIndexMapping.containsKey(Deadline.class.getName())) {
+            int deadlineIndex = handler.paramIndexMapping.get(Deadline.class.getName());
+            paramValues[deadlineIndex] = deadline == null ? Deadline.NONE : deadline;
+        }
+        
+        if (handler.bodyIndex >= 0) {
+            Object body;
+            try {
+                body = readBody(req, handler);
+            } catch (JsonException e) {
+                resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                resp.getWriter().write("400 Bad Request!!! " + e.getMessage());
+                return;
+            }
+            if (body == null && handler.bodyRequired) {
+                resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                resp.getWriter().write("400 Bad Request!!! Required request body is missing");
+                return;
+            }
+            paramValues[handler.bodyIndex] = body;
+        }
+        
+        //处理方法可能卡在不响应interrupt的Socket读上，放到异步线程执行，到期直接返回504
+        if (deadline != null && handler.coalesceTimeout < 0 && req.isAsyncSupported()) {
+            invokeAsync(req, resp, url, handler, paramValues, deadline);
+            return;
+        }
+        
+        Object returnValue;
+        Deadline previous = Deadline.attach(deadline);
+        //合并调用的结果是大家共享的，不能因为某一个请求超时就中断，只限制等待时间
+        TimeoutGuard guard = deadline == null || handler.coalesceTimeout >= 0 ? null
+                : TimeoutGuard.arm(timeoutTimer, deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        boolean expired = false;
+        try {
+            if (handler.coalesceTimeout >= 0) {
+                //同一个url、同样的参数，同一时刻只调用一次
+                //Deadline是每个请求自己的，不能放进key，否则永远合并不了
+                Integer deadlineIndex = handler.paramIndexMapping.get(Deadline.class.getName());
+                List<Object> key = new ArrayList<Object>(paramValues.length + 1);
+                key.add(handler.getPattern().pattern());
+                for (int i = 0; i < paramValues.length; i++) {
+                    if (deadlineIndex == null || i != deadlineIndex) {
+                        key.add(paramValues[i]);
+                    }
+                }
+                long waitMillis = handler.coalesceTimeout;
+                if (deadline != null) {
+                    waitMillis = Math.min(waitMillis, deadline.remaining(TimeUnit.MILLISECONDS));
+                }
+                try {
+                    returnValue = coalescer.execute(key, () -> handler.method.invoke(handler.controller, paramValues),
+                            waitMillis);
+                } catch (TimeoutException e) {
+                    if (deadline != null && deadline.isExpired()) {
+                        throw new DeadlineExceededException("Deadline exceeded while waiting for coalesced call");
+                    }
+                    resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    resp.getWriter().write("503 Service Unavailable!!!");
+                    return;
+                }
+            } else {
+                returnValue = handler.method.invoke(handler.controller, paramValues);
+            }
+        } catch (Exception e) {
+            if (guard != null) {
+                expired = guard.disarm();
+                guard = null;
+            }
+            if (!expired && !isDeadlineExceeded(e)) {
+                throw e;
+            }
+            writeTimeout(resp, url);
+            return;
+        } finally {
+            if (guard != null) {
+                expired = guard.disarm();
+            }
+            Deadline.restore(previous);
+        }
+        if (expired) {
+            //执行完了但已经超时，结果不要了
+            writeTimeout(resp, url);
+            return;
+        }
+        writeResult(req, resp, returnValue);
+        
+    }
+    
+    private void writeResult(HttpServletRequest req, HttpServletResponse resp, Object returnValue) throws IOException {
         if (returnValue == null || returnValue instanceof Void) {
             return;
         }
+        if (streamingResponseHandler.supports(returnValue)) {
+            streamingResponseHandler.handle(req, resp, returnValue);
+            return;
+        }
         resp.getWriter().write(returnValue.toString());
-        
     }
     
-    private HandlerMapping getHandler(HttpServletRequest req) {
-        if (handlerMapping.isEmpty()) {
+    /**
+     * 在容器的异步线程上调用处理方法，容器线程直接返回
+     * <p>到期时时间轮中断处理线程，同时另起一个容器线程写504并complete，不等处理方法返回；
+     * 处理方法拿到的是TimeoutResponseWrapper，超时后它再写什么都会被丢掉
+     * <p>处理方法先执行完就由它写结果并complete，流式结果交给StreamingResponseHandler接着用这个AsyncContext
+     */
+    private void invokeAsync(final HttpServletRequest req, final HttpServletResponse resp, final String url,
+            final HandlerMapping handler, final Object[] paramValues, final Deadline deadline) {
+        final AsyncContext asyncContext = req.startAsync(req, resp);
+        asyncContext.setTimeout(0);
+        final TimeoutResponseWrapper guarded = new TimeoutResponseWrapper(resp);
+        Integer respIndex = handler.paramIndexMapping.get(HttpServletResponse.class.getName());
+        if (respIndex != null) {
+            paramValues[respIndex] = guarded;
+        }
+        final Runnable timeoutTask = new Runnable() {
+            @Override
+            public void run() {
+                guarded.expire();
+                try {
+                    writeTimeout(resp, url);
+                } catch (IOException e) {
+                    logger.warn("Write timeout response of {} failed", url, e);
+                } finally {
+                    asyncContext.complete();
+                }
+            }
+        };
+        asyncContext.start(new Runnable() {
+            @Override
+            public void run() {
+                Deadline previous = Deadline.attach(deadline);
+                TimeoutGuard guard = TimeoutGuard.arm(timeoutTimer, deadline.remaining(TimeUnit.NANOSECONDS),
+                        TimeUnit.NANOSECONDS, new Runnable() {
+                            @Override
+                            public void run() {
+                                //时间轮线程不能等处理方法的写入，交给容器线程
+                                asyncContext.start(timeoutTask);
+                            }
+                        });
+                Object returnValue = null;
+                Exception failure = null;
+                try {
+                    returnValue = handler.method.invoke(handler.controller, paramValues);
+                } catch (Exception e) {
+                    failure = e;
+                } finally {
+                    Deadline.restore(previous);
+                }
+                if (guard.disarm()) {
+                    //504已经写了
+                    return;
+                }
+                boolean complete = true;
+                try {
+                    if (failure == null) {
+                        writeResult(req, resp, returnValue);
+                        complete = returnValue == null || !streamingResponseHandler.supports(returnValue);
+                    } else if (isDeadlineExceeded(failure)) {
+                        writeTimeout(resp, url);
+                    } else {
+                        writeError(resp, url, failure);
+                    }
+                } catch (Exception e) {
+                    logger.error("Write response of {} failed", url, e);
+                } finally {
+                    if (complete) {
+                        asyncContext.complete();
+                    }
+                }
+            }
+        });
+    }
+    
+    /**
+     * 期限取@Timeout或request.timeout.default，请求头request.timeout.header（剩余毫秒数）更短就用请求头的
+     * <p>请求头是调用方给的，最多按request.timeout.max算，不能让一个请求挂着不放
+     *
+     * @return null表示不限制
+     */
+    private Deadline resolveDeadline(HttpServletRequest req, HandlerMapping handler) {
+        long timeout = handler.timeout >= 0 ? handler.timeout : defaultTimeout;
+        String header = req.getHeader(timeoutHeader);
+        if (header != null) {
+            try {
+                long remaining = Math.min(Long.parseLong(header.trim()), maxHeaderTimeout);
+                timeout = timeout > 0 ? Math.min(timeout, remaining) : remaining;
+                if (timeout <= 0) {
+                    return Deadline.after(0, TimeUnit.MILLISECONDS);
+                }
+            } catch (NumberFormatException e) {
+                logger.debug("Ignored invalid timeout header {}", header);
+            }
+        }
+        return timeout > 0 ? Deadline.after(timeout, TimeUnit.MILLISECONDS) : null;
+    }
+    
+    private boolean isDeadlineExceeded(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof DeadlineExceededException) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 处理方法写了一半的内容丢掉，还没提交的话改成504
+     */
+    private void writeTimeout(HttpServletResponse resp, String url) throws IOException {
+        logger.warn("Handler of {} timed out", url);
+        if (resp.isCommitted()) {
+            return;
+        }
+        resp.resetBuffer();
+        resp.setStatus(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+        resp.getWriter().write("504 Gateway Timeout!!!");
+    }
+    
+    /**
+     * 边读请求体边绑定，不先把整个body读成字符串
+     */
+    private Object readBody(HttpServletRequest req, HandlerMapping handler) throws IOException {
+        InputStream in = req.getInputStream();
+        if (in == null) {
             return null;
         }
-        //绝对路径
-        String url = req.getRequestURI();
-        //上下文地址
-        String contextPath = req.getContextPath();
-        //处理成相对路径
-        url = url.replaceAll(contextPath, "").replaceAll("/+", "/");
+        String encoding = req.getCharacterEncoding();
+        Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+        return handler.bodyPlan.read(in, charset);
+    }
+    
+    private HandlerMapping getHandler(String url) {
+        HandlerMapping handler = findHandler(url);
+        if (handler != null || !hasLazyRoutes) {
+            return handler;
+        }
         
+        //没找到再看是不是还没创建的Controller管的url
+        for (LazyRoute route : lazyRoutes) {
+            if (route.matches(url)) {
+                initLazyRoute(route);
+            }
+        }
+        //别的线程可能刚注册完，也要再找一次
+        return findHandler(url);
+    }
+    
+    private HandlerMapping findHandler(String url) {
         for (HandlerMapping handler : this.handlerMapping) {
             Matcher matcher = handler.getPattern().matcher(url);
             if (!matcher.matches()) {
@@ -340,19 +644,141 @@ public class DispatcherServlet extends HttpServlet {
         return null;
     }
     
+    private String getRelativeUrl(HttpServletRequest req) {
+        //绝对路径
+        String url = req.getRequestURI();
+        //上下文地址
+        String contextPath = req.getContextPath();
+        //处理成相对路径，正常的url不会有连续的/，不走正则
+        if (!contextPath.isEmpty() && url.startsWith(contextPath)) {
+            url = url.substring(contextPath.length());
+        }
+        return url.contains("//") ? url.replaceAll("/+", "/") : url;
+    }
+    
+    /**
+     * 预热：用假请求把每个HandlerMapping都跑一遍，跑够次数或者超过时间预算就结束
+     * <p>warmup.enabled=true才会开启，会真正调用Controller，所以只预热配置了warmup.fixture.url或者加了@WarmUp的方法
+     * <p>预算只在两个请求之间检查，某个处理方法卡住时由时间轮到点强制就绪并中断预热线程
+     */
+    private void startWarmUp() {
+        if (!Boolean.parseBoolean(environment.getProperty("warmup.enabled", "false"))) {
+            ready = true;
+            return;
+        }
+        final int iterations = Integer.parseInt(environment.getProperty("warmup.iterations", "2000"));
+        final long budgetNanos = TimeUnit.MILLISECONDS.toNanos(
+                Long.parseLong(environment.getProperty("warmup.timeBudget", "10000")));
+        final Map<String, Map<String, String[]>> requests = buildWarmUpRequests();
+        
+        warmUpThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                int total = 0;
+                int failed = 0;
+                round:
+                for (int i = 0; i < iterations; i++) {
+                    for (Map.Entry<String, Map<String, String[]>> request : requests.entrySet()) {
+                        if (Thread.currentThread().isInterrupted() || System.nanoTime() - start > budgetNanos) {
+                            break round;
+                        }
+                        try {
+                            doDispatch(WarmUpRequests.request(request.getKey(), request.getValue()),
+                                    WarmUpRequests.response(), request.getKey());
+                        } catch (Exception e) {
+                            failed++;
+                        }
+                        total++;
+                    }
+                }
+                budgetTimeout.cancel();
+                ready = true;
+                logger.info("Warm-up finished :{} requests, {} failed, {}ms", total, failed,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        }, "warm-up");
+        warmUpThread.setDaemon(true);
+        final Thread thread = warmUpThread;
+        budgetTimeout = timeoutTimer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                if (!ready) {
+                    ready = true;
+                    thread.interrupt();
+                    logger.warn("Warm-up exceeded its time budget, marked ready");
+                }
+            }
+        }, budgetNanos, TimeUnit.NANOSECONDS);
+        warmUpThread.start();
+    }
+    
+    /**
+     * 预热请求：先取warmup.fixture.url=a=1&b=2配置的，加了@WarmUp的再用形参类型造参数
+     * <p>其余的都跳过，造出来的参数调用有副作用的方法会真的改数据；url是正则又没有配置的也跳过
+     */
+    private Map<String, Map<String, String[]>> buildWarmUpRequests() {
+        Map<String, Map<String, String[]>> requests = new LinkedHashMap<String, Map<String, String[]>>();
+        String prefix = "warmup.fixture.";
+        for (String key : environment.getSnapshot().keySet()) {
+            if (key.startsWith(prefix)) {
+                requests.put(key.substring(prefix.length()),
+                        WarmUpRequests.parseQuery(environment.getProperty(key)));
+            }
+        }
+        
+        for (HandlerMapping handler : handlerMapping) {
+            boolean covered = false;
+            for (String url : requests.keySet()) {
+                if (handler.getPattern().matcher(url).matches()) {
+                    covered = true;
+                    break;
+                }
+            }
+            String url = handler.getPattern().pattern();
+            if (covered || !handler.getMethod().isAnnotationPresent(WarmUp.class)
+                    || !handler.getPattern().matcher(url).matches()) {
+                continue;
+            }
+            
+            Map<String, String[]> params = new LinkedHashMap<String, String[]>();
+            for (Map.Entry<String, Integer> param : handler.paramIndexMapping.entrySet()) {
+                Class<?> type = handler.getParamTypes()[param.getValue()];
+                if (type == HttpServletRequest.class || type == HttpServletResponse.class || type == Deadline.class) {
+                    continue;
+                }
+                params.put(param.getKey(), new String[] {sampleValue(type)});
+            }
+            requests.put(url, params);
+        }
+        return requests;
+    }
+    
+    /**
+     * 按形参类型造一个能通过convert的值
+     */
+    private String sampleValue(Class<?> type) {
+        if (type == Integer.class || type == int.class || type == Long.class || type == long.class
+                || type == Short.class || type == short.class || type == Byte.class || type == byte.class) {
+            return "1";
+        } else if (type == Double.class || type == double.class || type == Float.class || type == float.class) {
+            return "1.0";
+        } else if (type == Boolean.class || type == boolean.class) {
+            return "true";
+        } else if (type == Character.class || type == char.class) {
+            return "a";
+        } else if (type.isEnum() && type.getEnumConstants().length > 0) {
+            return ((Enum<?>) type.getEnumConstants()[0]).name();
+        }
+        return "warmup";
+    }
+    
     /**
      * url传过来的参数都是String类型的，HTTP是基于字符串协议 只需要把String转换为任意类型就好
      */
     private Object convert(Class<?> type, String value) {
-        //如果是int
-        if (Integer.class == type) {
-            return Integer.valueOf(value);
-        } else if (Double.class == type) {
-            return Double.valueOf(value);
-        }
-        //如果还有double或者其他类型，继续加if
-        //这时候，我们应该想到策略模式了
-        return value;
+        //类型多了之后统一放到TypeConverter里
+        return TypeConverter.convert(type, value);
     }
     
     
@@ -390,6 +816,20 @@ public class DispatcherServlet extends HttpServlet {
         //参数的名字作为key,参数的顺序，位置作为值
         private Map<String, Integer> paramIndexMapping;
         
+        //@Coalesce的等待时间，-1表示不合并
+        private long coalesceTimeout = -1;
+        
+        //@Timeout的毫秒数，-1表示用request.timeout.default
+        private long timeout = -1;
+        
+        //@RequestBody参数的位置，-1表示没有
+        private int bodyIndex = -1;
+        
+        private boolean bodyRequired;
+        
+        //创建HandlerMapping时就生成好，请求来了直接用
+        private BindingPlan bodyPlan;
+        
         public HandlerMapping(Pattern pattern, Object controller, Method method) {
             this.pattern = pattern;
             this.method = method;
@@ -399,6 +839,23 @@ public class DispatcherServlet extends HttpServlet {
             
             paramIndexMapping = new HashMap<String, Integer>();
             putParamIndexMapping(method);
+            
+            if (method.isAnnotationPresent(Timeout.class)) {
+                timeout = Math.max(0, method.getAnnotation(Timeout.class).value());
+            }
+            
+            //直接操作request、response的方法没法共享结果，请求体绑定出来的对象也没法当key，不合并
+            //Iterator、Stream、ResponseEmitter只能消费一次，也不能分给多个请求
+            if (method.isAnnotationPresent(Coalesce.class)) {
+                if (paramIndexMapping.containsKey(HttpServletRequest.class.getName())
+                        || paramIndexMapping.containsKey(HttpServletResponse.class.getName()) || bodyIndex >= 0) {
+                    logger.warn("Ignored @Coalesce on {}, it uses request, response or request body", method);
+                } else if (StreamingResponseHandler.supportsType(method.getReturnType())) {
+                    logger.warn("Ignored @Coalesce on {}, its streaming result can only be consumed once", method);
+                } else {
+                    coalesceTimeout = method.getAnnotation(Coalesce.class).timeout();
+                }
+            }
         }
         
         private void putParamIndexMapping(Method method) {
@@ -414,15 +871,22 @@ public class DispatcherServlet extends HttpServlet {
                         if (!"".equals(paramName.trim())) {
                             paramIndexMapping.put(paramName, i);
                         }
+                    } else if (a instanceof RequestBody) {
+                        if (bodyIndex >= 0) {
+                            throw new IllegalStateException("More than one @RequestBody on " + method);
+                        }
+                        bodyIndex = i;
+                        bodyRequired = ((RequestBody) a).required();
+                        bodyPlan = BindingPlan.forType(method.getGenericParameterTypes()[i]);
                     }
                 }
             }
             
-            //提取方法中的request和response参数
+            //提取方法中的request、response和deadline参数
             Class<?>[] paramsTypes = method.getParameterTypes();
             for (int i = 0; i < paramsTypes.length; i++) {
                 Class<?> type = paramsTypes[i];
-                if (type == HttpServletRequest.class || type == HttpServletResponse.class) {
+                if (type == HttpServletRequest.class || type == HttpServletResponse.class || type == Deadline.class) {
                     paramIndexMapping.put(type.getName(), i);
                 }
             }
@@ -430,4 +894,31 @@ public class DispatcherServlet extends HttpServlet {
         }
     }
     
-}
\ No newline at end of file
+    /**
+     * 还没创建的懒加载Controller，只有类上的url前缀
+     * <p>前缀是空的或者写了正则，判断不了就当成都匹配，最坏是多创建一个Controller
+     */
+    private static final class LazyRoute {
+        
+        private final String prefix;
+        
+        private final String beanName;
+        
+        private final boolean matchesAll;
+        
+        LazyRoute(String baseUrl, String beanName) {
+            String prefix = ("/" + baseUrl).replaceAll("/+", "/");
+            if (prefix.length() > 1 && prefix.endsWith("/")) {
+                prefix = prefix.substring(0, prefix.length() - 1);
+            }
+            this.prefix = prefix;
+            this.beanName = beanName;
+            this.matchesAll = "/".equals(prefix) || prefix.matches(".*[\\\\.\\[\\](){}*+?^$|].*");
+        }
+        
+        boolean matches(String url) {
+            return matchesAll || url.equals(prefix) || url.startsWith(prefix + "/");
+        }
+    }
+    
+}
@@ -0,0 +1,244 @@
+package com.zxw.benchmark;
+
+import com.zxw.framework.servlet.v2.DispatcherServlet;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 冷启动对比：lazy-init=false和lazy-init=true各启动几次，看第一个请求要等多久
+ * <p>每次都新起一个JVM，类加载、JIT都是冷的，和真正部署一样；不依赖Servlet容器，ServletConfig、请求、响应用动态代理造
+ * <p>用法：mvn test-compile 之后
+ * <pre>
+ * java -cp target/classes:target/test-classes:javax.servlet-api-3.1.0.jar com.zxw.benchmark.StartupBenchmark [次数] [url]
+ * </pre>
+ * 次数默认5，url默认/demo/query?name=benchmark；输出每种模式的中位数：
+ * init是DispatcherServlet.init的耗时，first是第一个请求的耗时，ready是从JVM启动到第一个请求返回
+ */
+public class StartupBenchmark {
+
+    private static final String RESULT_PREFIX = "RESULT ";
+
+    private static final String[] MODES = {"eager", "lazy"};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "--run".equals(args[0])) {
+            runOnce(args[1], args[2]);
+            return;
+        }
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        String url = args.length > 1 ? args[1] : "/demo/query?name=benchmark";
+
+        Map<String, List<long[]>> results = new LinkedHashMap<String, List<long[]>>();
+        for (String mode : MODES) {
+            results.put(mode, new ArrayList<long[]>());
+        }
+        //两种模式交替跑，机器负载的变化对两边的影响差不多
+        for (int i = 0; i < rounds; i++) {
+            for (String mode : MODES) {
+                results.get(mode).add(fork("benchmark-" + mode + ".properties", url));
+            }
+        }
+
+        System.out.println("Startup benchmark, " + rounds + " rounds, first request " + url + " (median ms)");
+        System.out.println(String.format("%-8s%10s%10s%10s", "mode", "init", "first", "ready"));
+        for (Map.Entry<String, List<long[]>> entry : results.entrySet()) {
+            System.out.println(String.format("%-8s%10d%10d%10d", entry.getKey(),
+                    median(entry.getValue(), 0), median(entry.getValue(), 1), median(entry.getValue(), 2)));
+        }
+    }
+
+    /**
+     * 新起一个JVM跑一次，读它输出的结果
+     */
+    private static long[] fork(String config, String url) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                StartupBenchmark.class.getName(), "--run", config, url)
+                .redirectErrorStream(true)
+                .start();
+        long[] result = null;
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    String[] parts = line.substring(RESULT_PREFIX.length()).split(" ");
+                    result = new long[] {Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2])};
+                } else {
+                    output.append(line).append(System.lineSeparator());
+                }
+            }
+        }
+        int exit = process.waitFor();
+        if (exit != 0 || result == null) {
+            throw new IllegalStateException("Benchmark run with " + config + " failed, exit code " + exit
+                    + System.lineSeparator() + output);
+        }
+        return result;
+    }
+
+    private static void runOnce(String config, String url) throws Exception {
+        long start = System.nanoTime();
+        DispatcherServlet servlet = new DispatcherServlet();
+        servlet.init(servletConfig(config));
+        long init = System.nanoTime() - start;
+
+        StringWriter body = new StringWriter();
+        int[] status = {HttpServletResponse.SC_OK};
+        start = System.nanoTime();
+        servlet.service(request(url), response(body, status));
+        long first = System.nanoTime() - start;
+        long ready = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        if (status[0] != HttpServletResponse.SC_OK) {
+            throw new IllegalStateException("First request " + url + " returned " + status[0] + " " + body);
+        }
+
+        System.out.println(RESULT_PREFIX + init / 1000000 + " " + first / 1000000 + " " + ready);
+        servlet.destroy();
+        //时间轮、写线程等不一定都是守护线程
+        System.exit(0);
+    }
+
+    private static ServletConfig servletConfig(final String config) {
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        final ServletContext servletContext = proxy(ServletContext.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getAttribute".equals(method.getName())) {
+                    return attributes.get(args[0]);
+                } else if ("setAttribute".equals(method.getName())) {
+                    attributes.put((String) args[0], args[1]);
+                } else if ("getContextPath".equals(method.getName())) {
+                    return "";
+                }
+                return defaultValue(method);
+            }
+        });
+        return proxy(ServletConfig.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getInitParameter".equals(method.getName())) {
+                    return "contextConfigLocation".equals(args[0]) ? config : null;
+                } else if ("getServletContext".equals(method.getName())) {
+                    return servletContext;
+                } else if ("getServletName".equals(method.getName())) {
+                    return "benchmark";
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private static ServletRequest request(String url) {
+        int question = url.indexOf('?');
+        final String uri = question < 0 ? url : url.substring(0, question);
+        final Map<String, String[]> params = new LinkedHashMap<String, String[]>();
+        if (question >= 0) {
+            for (String pair : url.substring(question + 1).split("&")) {
+                int eq = pair.indexOf('=');
+                params.put(eq < 0 ? pair : pair.substring(0, eq), new String[] {eq < 0 ? "" : pair.substring(eq + 1)});
+            }
+        }
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        return proxy(HttpServletRequest.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if ("getMethod".equals(name)) {
+                    return "GET";
+                } else if ("getRequestURI".equals(name)) {
+                    return uri;
+                } else if ("getContextPath".equals(name) || "getServletPath".equals(name)) {
+                    return "";
+                } else if ("getProtocol".equals(name)) {
+                    return "HTTP/1.1";
+                } else if ("getRemoteAddr".equals(name)) {
+                    return "127.0.0.1";
+                } else if ("getParameterMap".equals(name)) {
+                    return params;
+                } else if ("getParameter".equals(name)) {
+                    String[] values = params.get(args[0]);
+                    return values == null ? null : values[0];
+                } else if ("getAttribute".equals(name)) {
+                    return attributes.get(args[0]);
+                } else if ("setAttribute".equals(name)) {
+                    attributes.put((String) args[0], args[1]);
+                    return null;
+                } else if ("getHeaders".equals(name) || "getHeaderNames".equals(name)
+                        || "getParameterNames".equals(name) || "getAttributeNames".equals(name)) {
+                    return Collections.emptyEnumeration();
+                } else if ("getDateHeader".equals(name) || "getIntHeader".equals(name)) {
+                    return -1;
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private static ServletResponse response(StringWriter body, final int[] status) {
+        final PrintWriter writer = new PrintWriter(body);
+        return proxy(HttpServletResponse.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if ("getWriter".equals(name)) {
+                    return writer;
+                } else if ("setStatus".equals(name) || "sendError".equals(name)) {
+                    status[0] = (Integer) args[0];
+                    return null;
+                } else if ("getStatus".equals(name)) {
+                    return status[0];
+                } else if ("getCharacterEncoding".equals(name)) {
+                    return "UTF-8";
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(StartupBenchmark.class.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+
+    /**
+     * 没模拟的方法返回类型的默认值，基本类型不能返回null
+     */
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    private static long median(List<long[]> samples, int column) {
+        long[] values = new long[samples.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = samples.get(i)[column];
+        }
+        Arrays.sort(values);
+        return values[values.length / 2];
+    }
+}
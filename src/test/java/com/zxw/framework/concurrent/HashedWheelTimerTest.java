@@ -0,0 +1,156 @@
+package com.zxw.framework.concurrent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HashedWheelTimerTest {
+
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setUp() {
+        timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void firesAfterDelay() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(countDown(latch), 50, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        //精度只到tick，不会早于delay
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    public void zeroAndNegativeDelayFireOnNextTick() throws Exception {
+        CountDownLatch latch = new CountDownLatch(2);
+        timer.newTimeout(countDown(latch), 0, TimeUnit.MILLISECONDS);
+        timer.newTimeout(countDown(latch), -5, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void delayLongerThanOneRound() throws Exception {
+        //8格 * 10ms一圈80ms，250ms要转好几圈
+        final CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        timer.newTimeout(countDown(latch), 250, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(250));
+    }
+
+    @Test
+    public void expiresInDeadlineOrder() throws Exception {
+        final List<Integer> order = new CopyOnWriteArrayList<Integer>();
+        final CountDownLatch latch = new CountDownLatch(3);
+        int[] delays = {120, 40, 80};
+        for (final int delay : delays) {
+            timer.newTimeout(new Runnable() {
+                @Override
+                public void run() {
+                    order.add(delay);
+                    latch.countDown();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(40, 80, 120), order);
+    }
+
+    @Test
+    public void cancelledTimeoutDoesNotFire() throws Exception {
+        AtomicInteger fired = new AtomicInteger();
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(increment(fired), 50, TimeUnit.MILLISECONDS);
+        assertTrue(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertFalse(timeout.cancel());
+        Thread.sleep(150);
+        assertEquals(0, fired.get());
+    }
+
+    @Test
+    public void hugeDelayDoesNotOverflow() throws Exception {
+        //System.nanoTime() + Long.MAX_VALUE会溢出成负数，以前下一个tick就执行了
+        Thread.sleep(20);
+        AtomicInteger fired = new AtomicInteger();
+        timer.newTimeout(increment(fired), Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        timer.newTimeout(increment(fired), Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        timer.newTimeout(increment(fired), Long.MAX_VALUE / 2, TimeUnit.DAYS);
+        //确认时间轮在转
+        CountDownLatch latch = new CountDownLatch(1);
+        timer.newTimeout(countDown(latch), 50, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(0, fired.get());
+    }
+
+    @Test
+    public void failingTaskDoesNotStopTheTimer() throws Exception {
+        timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("expected");
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+        CountDownLatch latch = new CountDownLatch(1);
+        timer.newTimeout(countDown(latch), 50, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void manyTimeouts() throws Exception {
+        int count = 10000;
+        CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            timer.newTimeout(countDown(latch), i % 200, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsAfterStop() {
+        timer.stop();
+        timer.newTimeout(increment(new AtomicInteger()), 10, TimeUnit.MILLISECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveTick() {
+        new HashedWheelTimer("bad", 0, TimeUnit.MILLISECONDS, 8);
+    }
+
+    private static Runnable countDown(final CountDownLatch latch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+    }
+
+    private static Runnable increment(final AtomicInteger counter) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                counter.incrementAndGet();
+            }
+        };
+    }
+}
@@ -0,0 +1,413 @@
+package com.zxw.framework.concurrent;
+
+import com.zxw.framework.annotation.EventListener;
+import com.zxw.framework.event.EventBus;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class RingBufferTest {
+
+    private static final Supplier<LongEvent> FACTORY = new Supplier<LongEvent>() {
+        @Override
+        public LongEvent get() {
+            return new LongEvent();
+        }
+    };
+
+    private final List<Thread> threads = new ArrayList<Thread>();
+
+    private final List<BatchEventProcessor<?>> processors = new ArrayList<BatchEventProcessor<?>>();
+
+    private EventBus eventBus;
+
+    @After
+    public void tearDown() throws Exception {
+        for (BatchEventProcessor<?> processor : processors) {
+            processor.halt();
+        }
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+        if (eventBus != null) {
+            eventBus.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSizeNotPowerOfTwo() {
+        new RingBuffer<LongEvent>(6, FACTORY, WaitStrategies.of("sleeping"));
+    }
+
+    @Test
+    public void tryNextReturnsMinusOneWhenFull() {
+        RingBuffer<LongEvent> ringBuffer = new RingBuffer<LongEvent>(4, FACTORY, WaitStrategies.of("sleeping"));
+        for (int i = 0; i < 4; i++) {
+            long sequence = ringBuffer.tryNext();
+            assertEquals(i, sequence);
+            ringBuffer.publish(sequence);
+        }
+        assertEquals(-1, ringBuffer.tryNext());
+        assertEquals(4, ringBuffer.backlog());
+
+        //消费者让出一个槽位后才能再抢到
+        ringBuffer.getConsumerSequence().set(0);
+        assertEquals(4, ringBuffer.tryNext());
+        assertEquals(-1, ringBuffer.tryNext());
+    }
+
+    @Test
+    public void publishedFlagDistinguishesRounds() {
+        RingBuffer<LongEvent> ringBuffer = new RingBuffer<LongEvent>(4, FACTORY, WaitStrategies.of("sleeping"));
+        long first = ringBuffer.tryNext();
+        ringBuffer.publish(first);
+        ringBuffer.getConsumerSequence().set(0);
+        for (int i = 1; i < 4; i++) {
+            ringBuffer.publish(ringBuffer.tryNext());
+        }
+        //序号4和序号0用同一个槽位，没发布之前不能被当成已发布
+        long wrapped = ringBuffer.tryNext();
+        assertEquals(4, wrapped);
+        assertSame(ringBuffer.get(first), ringBuffer.get(wrapped));
+        assertFalse(ringBuffer.isPublished(wrapped));
+        assertEquals(3, ringBuffer.getHighestPublishedSequence(1, wrapped));
+        ringBuffer.publish(wrapped);
+        assertTrue(ringBuffer.isPublished(wrapped));
+        assertEquals(4, ringBuffer.getHighestPublishedSequence(1, wrapped));
+    }
+
+    @Test
+    public void wrapsAroundManyTimes() throws Exception {
+        int count = 100000;
+        RingBuffer<LongEvent> ringBuffer = new RingBuffer<LongEvent>(8, FACTORY, WaitStrategies.of("yielding"));
+        final long[] received = new long[count];
+        final int[] size = new int[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        startProcessor(ringBuffer, new EventHandler<LongEvent>() {
+            @Override
+            public void onEvent(LongEvent event, long sequence, boolean endOfBatch) {
+                received[size[0]++] = event.value;
+                if (size[0] == received.length) {
+                    done.countDown();
+                }
+            }
+        });
+        for (int i = 0; i < count; i++) {
+            long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).value = i;
+            ringBuffer.publish(sequence);
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, received[i]);
+        }
+    }
+
+    @Test
+    public void multipleProducersBlocking() throws Exception {
+        multipleProducers("blocking");
+    }
+
+    @Test
+    public void multipleProducersSleeping() throws Exception {
+        multipleProducers("sleeping");
+    }
+
+    @Test
+    public void multipleProducersYielding() throws Exception {
+        multipleProducers("yielding");
+    }
+
+    /**
+     * 每个生产者发自己的0..n-1，消费者收到的每个生产者的数据不丢、不重复、保持顺序
+     */
+    private void multipleProducers(String waitStrategy) throws Exception {
+        final int producers = 4;
+        final int perProducer = 50000;
+        final RingBuffer<LongEvent> ringBuffer = new RingBuffer<LongEvent>(64, FACTORY, WaitStrategies.of(waitStrategy));
+        final long[] lastSeen = new long[producers];
+        final long[] counts = new long[producers];
+        final List<String> errors = new CopyOnWriteArrayList<String>();
+        final CountDownLatch done = new CountDownLatch(1);
+        for (int i = 0; i < producers; i++) {
+            lastSeen[i] = -1;
+        }
+        startProcessor(ringBuffer, new EventHandler<LongEvent>() {
+            private long total;
+
+            @Override
+            public void onEvent(LongEvent event, long sequence, boolean endOfBatch) {
+                int producer = event.producer;
+                if (event.value != lastSeen[producer] + 1) {
+                    errors.add("producer " + producer + " expected " + (lastSeen[producer] + 1) + " but got "
+                            + event.value);
+                }
+                lastSeen[producer] = event.value;
+                counts[producer]++;
+                if (++total == (long) producers * perProducer) {
+                    done.countDown();
+                }
+            }
+        });
+
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producerThreads = new ArrayList<Thread>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perProducer; i++) {
+                        long sequence = ringBuffer.next();
+                        LongEvent event = ringBuffer.get(sequence);
+                        event.producer = producer;
+                        event.value = i;
+                        ringBuffer.publish(sequence);
+                    }
+                }
+            }, "producer-" + p);
+            thread.start();
+            producerThreads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : producerThreads) {
+            thread.join(10000);
+        }
+        assertTrue("consumer did not receive all events", done.await(10, TimeUnit.SECONDS));
+        assertEquals(new ArrayList<String>(), errors);
+        for (int p = 0; p < producers; p++) {
+            assertEquals(perProducer, counts[p]);
+            assertEquals(perProducer - 1, lastSeen[p]);
+        }
+        //消费者处理完一批才推进序号，最后一批可能还没推进
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (ringBuffer.backlog() != 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, ringBuffer.backlog());
+    }
+
+    @Test
+    public void processorDrainsPublishedEventsOnHalt() throws Exception {
+        RingBuffer<LongEvent> ringBuffer = new RingBuffer<LongEvent>(16, FACTORY, WaitStrategies.of("blocking"));
+        final CountDownLatch gate = new CountDownLatch(1);
+        final List<Long> received = new CopyOnWriteArrayList<Long>();
+        BatchEventProcessor<LongEvent> processor = startProcessor(ringBuffer, new EventHandler<LongEvent>() {
+            @Override
+            public void onEvent(LongEvent event, long sequence, boolean endOfBatch) throws Exception {
+                gate.await();
+                received.add(event.value);
+            }
+        });
+        for (int i = 0; i < 10; i++) {
+            long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).value = i;
+            ringBuffer.publish(sequence);
+        }
+        processor.halt();
+        gate.countDown();
+        threads.get(0).join(5000);
+        assertFalse(threads.get(0).isAlive());
+        assertEquals(10, received.size());
+    }
+
+    @Test
+    public void overflowDrop() throws Exception {
+        eventBus = new EventBus(4, WaitStrategies.of("blocking"), EventBus.OVERFLOW_DROP);
+        GatedListener listener = fillUp(eventBus);
+
+        eventBus.publishEvent(4);
+        assertEquals(1, eventBus.getDroppedCount());
+
+        listener.gate.countDown();
+        listener.awaitReceived(4);
+        Thread.sleep(50);
+        assertEquals(4, listener.values.size());
+        assertFalse(listener.values.contains(4));
+    }
+
+    @Test
+    public void overflowCallerRuns() throws Exception {
+        eventBus = new EventBus(4, WaitStrategies.of("blocking"), EventBus.OVERFLOW_CALLER_RUNS);
+        GatedListener listener = fillUp(eventBus);
+
+        eventBus.publishEvent(4);
+        //满了直接在发布线程上调用，不用等消费者
+        assertEquals(Thread.currentThread(), listener.threadOf(4));
+        assertEquals(0, eventBus.getDroppedCount());
+
+        listener.gate.countDown();
+        listener.awaitReceived(5);
+        assertEquals("event-bus", listener.threadOf(0).getName());
+    }
+
+    @Test
+    public void overflowBlock() throws Exception {
+        eventBus = new EventBus(4, WaitStrategies.of("blocking"), EventBus.OVERFLOW_BLOCK);
+        final GatedListener listener = fillUp(eventBus);
+
+        Thread publisher = startPublisher(eventBus, 4);
+        publisher.join(200);
+        assertTrue("publisher should wait for a free slot", publisher.isAlive());
+
+        listener.gate.countDown();
+        publisher.join(5000);
+        assertFalse(publisher.isAlive());
+        listener.awaitReceived(5);
+        assertEquals("event-bus", listener.threadOf(4).getName());
+        assertEquals(0, eventBus.getDroppedCount());
+    }
+
+    @Test
+    public void closeReleasesBlockedPublisher() throws Exception {
+        eventBus = new EventBus(4, WaitStrategies.of("blocking"), EventBus.OVERFLOW_BLOCK);
+        final GatedListener listener = fillUp(eventBus);
+
+        Thread publisher = startPublisher(eventBus, 4);
+        publisher.join(100);
+        assertTrue(publisher.isAlive());
+
+        //close要等消费者处理完，放在别的线程上，先看被挡住的发布方有没有放出来
+        Thread closer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                eventBus.close();
+            }
+        });
+        closer.start();
+        publisher.join(5000);
+        assertFalse(publisher.isAlive());
+        assertEquals(publisher, listener.threadOf(4));
+
+        listener.gate.countDown();
+        closer.join(5000);
+        assertEquals(5, listener.values.size());
+    }
+
+    @Test
+    public void closeDeliversPendingEventsThenRunsOnCaller() throws Exception {
+        eventBus = new EventBus(16, WaitStrategies.of("sleeping"), EventBus.OVERFLOW_BLOCK);
+        GatedListener listener = new GatedListener();
+        listener.gate.countDown();
+        eventBus.registerListeners(listener);
+        for (int i = 0; i < 10; i++) {
+            eventBus.publishEvent(i);
+        }
+        eventBus.close();
+        //close返回时已经发布的都处理完了
+        assertEquals(10, listener.values.size());
+
+        eventBus.publishEvent(10);
+        assertEquals(Thread.currentThread(), listener.threadOf(10));
+    }
+
+    @Test
+    public void unregisteredListenerStopsReceiving() throws Exception {
+        eventBus = new EventBus(16, WaitStrategies.of("sleeping"), EventBus.OVERFLOW_BLOCK);
+        GatedListener listener = new GatedListener();
+        listener.gate.countDown();
+        eventBus.registerListeners(listener);
+        eventBus.publishEvent(0);
+        listener.awaitReceived(1);
+
+        assertEquals(1, eventBus.unregisterListeners(listener));
+        eventBus.publishEvent(1);
+        eventBus.close();
+        assertEquals(1, listener.values.size());
+    }
+
+    /**
+     * 注册一个卡在第一个事件上的监听器，再发3个把容量4的RingBuffer占满
+     */
+    private GatedListener fillUp(EventBus eventBus) throws Exception {
+        GatedListener listener = new GatedListener();
+        eventBus.registerListeners(listener);
+        eventBus.publishEvent(0);
+        assertTrue(listener.entered.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < 4; i++) {
+            eventBus.publishEvent(i);
+        }
+        return listener;
+    }
+
+    private Thread startPublisher(final EventBus eventBus, final Integer event) {
+        Thread publisher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                eventBus.publishEvent(event);
+            }
+        }, "publisher");
+        publisher.start();
+        return publisher;
+    }
+
+    private <E> BatchEventProcessor<E> startProcessor(RingBuffer<E> ringBuffer, EventHandler<E> handler) {
+        BatchEventProcessor<E> processor = new BatchEventProcessor<E>(ringBuffer, handler);
+        Thread thread = new Thread(processor, "processor");
+        thread.setDaemon(true);
+        thread.start();
+        processors.add(processor);
+        threads.add(thread);
+        return processor;
+    }
+
+    private static final class LongEvent {
+
+        private int producer;
+
+        private long value;
+    }
+
+    /**
+     * 异步监听器，后台线程上的调用在gate打开之前都卡在第一个事件上
+     */
+    public static final class GatedListener {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+
+        private final CountDownLatch gate = new CountDownLatch(1);
+
+        private final List<Integer> values = new CopyOnWriteArrayList<Integer>();
+
+        private final List<Thread> callers = new CopyOnWriteArrayList<Thread>();
+
+        @EventListener(async = true)
+        public void onEvent(Integer value) throws InterruptedException {
+            if (Thread.currentThread().getName().equals("event-bus")) {
+                entered.countDown();
+                gate.await();
+            }
+            //两个列表要对得上
+            synchronized (this) {
+                values.add(value);
+                callers.add(Thread.currentThread());
+            }
+        }
+
+        synchronized Thread threadOf(Integer value) {
+            int index = values.indexOf(value);
+            return index < 0 ? null : callers.get(index);
+        }
+
+        void awaitReceived(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (values.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue("expected " + count + " events but got " + values, values.size() >= count);
+        }
+    }
+}
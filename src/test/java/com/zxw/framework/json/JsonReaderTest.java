@@ -0,0 +1,416 @@
+package com.zxw.framework.json;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class JsonReaderTest {
+
+    //JsonReader的缓冲区大小
+    private static final int BUFFER_SIZE = 8192;
+
+    @Test
+    public void validNumbers() throws IOException {
+        assertEquals(0, reader("0").nextLong());
+        assertEquals(0, reader("-0").nextLong());
+        assertEquals(-17, reader("-17").nextLong());
+        assertEquals(123456789012345678L, reader("123456789012345678").nextLong());
+        assertEquals(Long.MAX_VALUE, reader("9223372036854775807").nextLong());
+        assertEquals(Long.MIN_VALUE, reader("-9223372036854775808").nextLong());
+        assertEquals(1000, reader("1e3").nextLong());
+        assertEquals(2, reader("2.0").nextLong());
+        assertEquals(1.5, reader("1.5").nextDouble(), 0);
+        assertEquals(-0.25, reader("-0.25").nextDouble(), 0);
+        assertEquals(1e10, reader("1E10").nextDouble(), 0);
+        assertEquals(100, reader("1e+2").nextDouble(), 0);
+        assertEquals(0.01, reader("1e-2").nextDouble(), 0);
+        assertEquals(0, reader("0.0e0").nextDouble(), 0);
+        assertEquals(Double.MAX_VALUE, reader("1.7976931348623157e308").nextDouble(), 0);
+        assertEquals("1.50", reader("1.50").nextString());
+    }
+
+    @Test
+    public void malformedNumbers() throws IOException {
+        //数字从位置1开始，括号里是第一个不合法字符在原文里的位置
+        assertInvalidNumber("[01]", 2);
+        assertInvalidNumber("[-01]", 3);
+        assertInvalidNumber("[1.]", 3);
+        assertInvalidNumber("[1.e3]", 3);
+        assertInvalidNumber("[1e]", 3);
+        assertInvalidNumber("[1e+]", 4);
+        assertInvalidNumber("[-]", 2);
+        assertInvalidNumber("[--1]", 2);
+        assertInvalidNumber("[1-2]", 2);
+        assertInvalidNumber("[1.2.3]", 4);
+        assertInvalidNumber("[1e5e5]", 4);
+        assertInvalidNumber("[1+1]", 2);
+    }
+
+    @Test
+    public void malformedNumberPositionCountsEarlierInput() throws IOException {
+        JsonReader reader = reader("[1, 22, 3-4]");
+        reader.beginArray();
+        assertEquals(1, reader.nextLong());
+        assertEquals(22, reader.nextLong());
+        try {
+            reader.nextLong();
+            fail();
+        } catch (JsonException e) {
+            assertEquals("Invalid number '3-4' at position 9", e.getMessage());
+        }
+    }
+
+    @Test
+    public void numbersNotStartingWithDigitOrMinus() throws IOException {
+        for (String json : new String[] {"[.5]", "[+1]", "[NaN]", "[Infinity]"}) {
+            JsonReader reader = reader(json);
+            reader.beginArray();
+            try {
+                reader.peek();
+                fail(json);
+            } catch (JsonException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("at position 1"));
+            }
+        }
+    }
+
+    @Test
+    public void skipValueChecksNumbers() throws IOException {
+        JsonReader reader = reader("{\"a\":1-2}");
+        reader.beginObject();
+        reader.nextName();
+        try {
+            reader.skipValue();
+            fail();
+        } catch (JsonException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid number '1-2'"));
+        }
+    }
+
+    @Test
+    public void nonFiniteNumbers() throws IOException {
+        assertOutOfRange(reader("1e400"), "double");
+        assertOutOfRange(reader("-1e400"), "double");
+        assertOutOfRange(reader("1e400"), "long");
+        assertOutOfRange(reader("\"NaN\""), "double");
+        assertOutOfRange(reader("\"Infinity\""), "double");
+        try {
+            BindingPlan.forType(Object.class).read(stream("[1, 1e400]"), StandardCharsets.UTF_8);
+            fail();
+        } catch (JsonException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("out of range"));
+        }
+        try {
+            BindingPlan.forType(double[].class).read(stream("[1, 1e400]"), StandardCharsets.UTF_8);
+            fail();
+        } catch (JsonException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("out of range"));
+        }
+        //BigDecimal能放下就不算错
+        assertEquals(new java.math.BigDecimal("1e400"),
+                BindingPlan.forType(java.math.BigDecimal.class).read(stream("1e400"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void longOverflow() throws IOException {
+        try {
+            reader("9223372036854775808").nextLong();
+            fail();
+        } catch (JsonException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Expected an integer"));
+        }
+        try {
+            reader("1.5").nextLong();
+            fail();
+        } catch (JsonException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Expected an integer"));
+        }
+    }
+
+    @Test
+    public void escapesAcrossBufferBoundary() throws IOException {
+        //转义序列的每一个拆分位置都要落在缓冲区边界上
+        String[] escapes = {"\\u00e9", "\\n", "\\\"", "\\\\", "\\/", "\\uD83D\\uDE00"};
+        String[] expected = {"é", "\n", "\"", "\\", "/", "😀"};
+        for (int e = 0; e < escapes.length; e++) {
+            for (int shift = -12; shift <= 2; shift++) {
+                int padding = BUFFER_SIZE - 1 + shift;
+                String json = "\"" + repeat('a', padding) + escapes[e] + "tail\"";
+                String value = reader(json).nextString();
+                assertEquals("escape " + escapes[e] + " shift " + shift,
+                        repeat('a', padding) + expected[e] + "tail", value);
+            }
+        }
+    }
+
+    @Test
+    public void escapesWithOneCharReads() throws IOException {
+        String json = "{\"k\\u0065y\":\"a\\tb\\u0041\",\"n\":-12.5e1}";
+        JsonReader reader = new JsonReader(new TrickleReader(json));
+        reader.beginObject();
+        assertEquals("key", reader.nextName());
+        assertEquals("a\tbA", reader.nextString());
+        assertEquals("n", reader.nextName());
+        assertEquals(-125, reader.nextDouble(), 0);
+        reader.endObject();
+        assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void unterminatedEscapeAtEndOfInput() throws IOException {
+        for (String json : new String[] {"\"abc\\", "\"abc\\u00", "\"abc"}) {
+            try {
+                reader(json).nextString();
+                fail(json);
+            } catch (JsonException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Unterminated"));
+            }
+        }
+    }
+
+    @Test
+    public void numberAcrossBufferBoundary() throws IOException {
+        for (int shift = -4; shift <= 4; shift++) {
+            String json = "[\"" + repeat('a', BUFFER_SIZE - 8 + shift) + "\",-1234.5e-1]";
+            JsonReader reader = reader(json);
+            reader.beginArray();
+            reader.nextString();
+            assertEquals(-123.45, reader.nextDouble(), 1e-9);
+            reader.endArray();
+        }
+    }
+
+    @Test
+    public void collections() throws Exception {
+        assertEquals(Arrays.asList(1, 2, 3), bind("ints", "[1, 2, 3]"));
+        assertEquals(new ArrayList<Integer>(), bind("ints", "[]"));
+        assertNull(bind("ints", "null"));
+        assertEquals(Arrays.asList(1, null, 3), bind("ints", "[1, null, 3]"));
+
+        Object set = bind("set", "[\"b\", \"a\", \"b\"]");
+        assertTrue(set instanceof LinkedHashSet);
+        assertEquals(Arrays.asList("b", "a"), new ArrayList<Object>((Set<?>) set));
+
+        Object sorted = bind("sorted", "[3, 1, 2]");
+        assertTrue(sorted instanceof TreeSet);
+        assertEquals(Arrays.asList(1L, 2L, 3L), new ArrayList<Object>((Set<?>) sorted));
+
+        assertTrue(bind("queue", "[\"x\"]") instanceof ArrayDeque);
+        assertTrue(bind("linked", "[\"x\"]") instanceof LinkedList);
+
+        assertEquals(Arrays.asList(Arrays.asList(1, 2), Collections.emptyList(), null),
+                bind("nested", "[[1, 2], [], null]"));
+
+        @SuppressWarnings("unchecked")
+        List<Item> items = (List<Item>) bind("items", "[{\"name\":\"a\",\"count\":1,\"extra\":[1,{}]}, {\"name\":\"b\"}]");
+        assertEquals(2, items.size());
+        assertEquals("a", items.get(0).name);
+        assertEquals(1, items.get(0).count);
+        assertEquals("b", items.get(1).name);
+        assertEquals(0, items.get(1).count);
+
+        @SuppressWarnings("unchecked")
+        Map<Integer, List<String>> map = (Map<Integer, List<String>>) bind("map", "{\"1\":[\"a\"],\"2\":[]}");
+        assertEquals(Arrays.asList("a"), map.get(1));
+        assertEquals(Collections.emptyList(), map.get(2));
+    }
+
+    @Test
+    public void collectionErrors() throws Exception {
+        assertBindFails("ints", "[1, \"x\"]");
+        assertBindFails("ints", "[1, 2");
+        assertBindFails("ints", "[1 2]");
+        assertBindFails("ints", "{\"a\":1}");
+        assertBindFails("ints", "[4294967296]");
+        assertBindFails("map", "{\"x\":[]}");
+    }
+
+    @Test
+    public void primitiveArrays() throws Exception {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) {
+            json.append(i == 0 ? "" : ",").append(i - 50);
+        }
+        json.append(']');
+        //超过初始容量16，要扩容
+        int[] ints = (int[]) read(int[].class, json.toString());
+        assertEquals(100, ints.length);
+        assertEquals(-50, ints[0]);
+        assertEquals(49, ints[99]);
+
+        assertArrayEquals(new long[] {Long.MIN_VALUE, 0, Long.MAX_VALUE},
+                (long[]) read(long[].class, "[-9223372036854775808, 0, 9223372036854775807]"));
+        assertArrayEquals(new double[] {1.5, -2, 3e-3}, (double[]) read(double[].class, "[1.5, -2, 3e-3]"), 0);
+        assertEquals("[true, false]", Arrays.toString((boolean[]) read(boolean[].class, "[true, false]")));
+        assertArrayEquals(new int[0], (int[]) read(int[].class, "[]"));
+        assertNull(read(int[].class, "null"));
+    }
+
+    @Test
+    public void primitiveArrayErrors() throws Exception {
+        assertReadFails(int[].class, "[1, null]");
+        assertReadFails(int[].class, "[2147483648]");
+        assertReadFails(int[].class, "[1.5]");
+        assertReadFails(boolean[].class, "[true, null]");
+        assertReadFails(double[].class, "[1, 01]");
+    }
+
+    @Test
+    public void objectArrays() throws Exception {
+        assertArrayEquals(new String[] {"a", null, "c"}, (String[]) read(String[].class, "[\"a\", null, \"c\"]"));
+        assertArrayEquals(new Integer[] {1, null}, (Integer[]) read(Integer[].class, "[1, null]"));
+
+        Item[] items = (Item[]) read(Item[].class, "[{\"name\":\"a\"}, null]");
+        assertEquals(2, items.length);
+        assertEquals("a", items[0].name);
+        assertNull(items[1]);
+
+        int[][] matrix = (int[][]) read(int[][].class, "[[1, 2], [], [3]]");
+        assertArrayEquals(new int[] {1, 2}, matrix[0]);
+        assertArrayEquals(new int[0], matrix[1]);
+        assertArrayEquals(new int[] {3}, matrix[2]);
+
+        //泛型数组
+        Object lists = bind("lists", "[[\"a\"], [\"b\", \"c\"]]");
+        assertTrue(lists instanceof List[]);
+        assertEquals(Arrays.asList("b", "c"), ((List<?>[]) lists)[1]);
+    }
+
+    @Test
+    public void documentLevel() throws Exception {
+        assertNull(read(int[].class, ""));
+        assertNull(read(int[].class, "  \n"));
+        assertReadFails(int[].class, "[1] [2]");
+        assertReadFails(int[].class, "[1] x");
+    }
+
+    private static void assertInvalidNumber(String json, long position) throws IOException {
+        JsonReader reader = reader(json);
+        reader.beginArray();
+        try {
+            reader.nextDouble();
+            fail(json);
+        } catch (JsonException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid number"));
+            assertTrue(json + ": " + e.getMessage(), e.getMessage().endsWith("at position " + position));
+        }
+    }
+
+    private static void assertOutOfRange(JsonReader reader, String type) throws IOException {
+        try {
+            if ("long".equals(type)) {
+                reader.nextLong();
+            } else {
+                reader.nextDouble();
+            }
+            fail();
+        } catch (JsonException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("at position"));
+        }
+    }
+
+    private static Object bind(String field, String json) throws Exception {
+        Type type = Holder.class.getDeclaredField(field).getGenericType();
+        return BindingPlan.forType(type).read(stream(json), StandardCharsets.UTF_8);
+    }
+
+    private static void assertBindFails(String field, String json) throws Exception {
+        try {
+            bind(field, json);
+            fail(field + " " + json);
+        } catch (JsonException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("at position"));
+        }
+    }
+
+    private static Object read(Class<?> type, String json) throws IOException {
+        return BindingPlan.forType(type).read(stream(json), StandardCharsets.UTF_8);
+    }
+
+    private static void assertReadFails(Class<?> type, String json) throws IOException {
+        try {
+            read(type, json);
+            fail(type.getSimpleName() + " " + json);
+        } catch (JsonException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("at position"));
+        }
+    }
+
+    private static JsonReader reader(String json) {
+        return new JsonReader(new StringReader(json));
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    /**
+     * 一次只给一个字符，每个记号都会跨fill
+     */
+    private static final class TrickleReader extends Reader {
+
+        private final String text;
+
+        private int pos;
+
+        TrickleReader(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (pos == text.length()) {
+                return -1;
+            }
+            cbuf[off] = text.charAt(pos++);
+            return 1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static class Item {
+
+        public String name;
+
+        public int count;
+    }
+
+    @SuppressWarnings("unused")
+    private static class Holder {
+
+        List<Integer> ints;
+
+        Set<String> set;
+
+        SortedSet<Long> sorted;
+
+        Queue<String> queue;
+
+        LinkedList<String> linked;
+
+        List<List<Integer>> nested;
+
+        List<Item> items;
+
+        Map<Integer, List<String>> map;
+
+        List<String>[] lists;
+    }
+}
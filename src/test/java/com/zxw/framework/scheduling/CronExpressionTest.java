@@ -0,0 +1,114 @@
+package com.zxw.framework.scheduling;
+
+import org.junit.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CronExpressionTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+
+    @Test
+    public void everySecond() {
+        CronExpression cron = new CronExpression("* * * * * ?");
+        assertEquals(START.plusSeconds(1), cron.next(START));
+    }
+
+    @Test
+    public void nextIsStrictlyAfter() {
+        CronExpression cron = new CronExpression("0 0 0 * * *");
+        assertEquals(START.plusDays(1), cron.next(START));
+        //毫秒部分不影响结果
+        assertEquals(START.plusDays(1), cron.next(START.withNano(500000000)));
+    }
+
+    @Test
+    public void stepsAndRanges() {
+        CronExpression cron = new CronExpression("*/15 10-12 * * * *");
+        assertEquals(LocalDateTime.of(2024, 1, 1, 0, 10, 0), cron.next(START));
+        assertEquals(LocalDateTime.of(2024, 1, 1, 0, 10, 15), cron.next(LocalDateTime.of(2024, 1, 1, 0, 10, 0)));
+        assertEquals(LocalDateTime.of(2024, 1, 1, 1, 10, 0), cron.next(LocalDateTime.of(2024, 1, 1, 0, 12, 45)));
+    }
+
+    @Test
+    public void startWithStep() {
+        CronExpression cron = new CronExpression("0 5/20 * * * *");
+        assertEquals(LocalDateTime.of(2024, 1, 1, 0, 5, 0), cron.next(START));
+        assertEquals(LocalDateTime.of(2024, 1, 1, 0, 25, 0), cron.next(LocalDateTime.of(2024, 1, 1, 0, 5, 0)));
+        assertEquals(LocalDateTime.of(2024, 1, 1, 1, 5, 0), cron.next(LocalDateTime.of(2024, 1, 1, 0, 45, 0)));
+    }
+
+    @Test
+    public void lists() {
+        CronExpression cron = new CronExpression("0 0 8,20 * * *");
+        assertEquals(LocalDateTime.of(2024, 1, 1, 8, 0, 0), cron.next(START));
+        assertEquals(LocalDateTime.of(2024, 1, 1, 20, 0, 0), cron.next(LocalDateTime.of(2024, 1, 1, 8, 0, 0)));
+        assertEquals(LocalDateTime.of(2024, 1, 2, 8, 0, 0), cron.next(LocalDateTime.of(2024, 1, 1, 20, 0, 0)));
+    }
+
+    @Test
+    public void monthAndDayNames() {
+        CronExpression cron = new CronExpression("0 0 9 * MAR MON-FRI");
+        LocalDateTime next = cron.next(START);
+        //2024-03-01是周五
+        assertEquals(LocalDateTime.of(2024, 3, 1, 9, 0, 0), next);
+        assertEquals(LocalDateTime.of(2024, 3, 4, 9, 0, 0), cron.next(next));
+    }
+
+    @Test
+    public void sundayIsZeroOrSeven() {
+        LocalDateTime sunday = LocalDateTime.of(2024, 1, 7, 0, 0, 0);
+        assertEquals(DayOfWeek.SUNDAY, sunday.getDayOfWeek());
+        assertEquals(sunday, new CronExpression("0 0 0 * * 0").next(START));
+        assertEquals(sunday, new CronExpression("0 0 0 * * 7").next(START));
+        assertEquals(sunday, new CronExpression("0 0 0 * * SUN").next(START));
+    }
+
+    @Test
+    public void dayOfMonthAndDayOfWeekAreAnded() {
+        //13号又是周五，标准cron会在2024-01-05（周五）就触发
+        CronExpression cron = new CronExpression("0 0 0 13 * FRI");
+        assertEquals(LocalDateTime.of(2024, 9, 13, 0, 0, 0), cron.next(START));
+    }
+
+    @Test
+    public void leapDay() {
+        CronExpression cron = new CronExpression("0 0 0 29 2 *");
+        assertEquals(LocalDateTime.of(2024, 2, 29, 0, 0, 0), cron.next(START));
+        assertEquals(LocalDateTime.of(2028, 2, 29, 0, 0, 0), cron.next(LocalDateTime.of(2024, 2, 29, 0, 0, 0)));
+    }
+
+    @Test
+    public void neverFires() {
+        assertNull(new CronExpression("0 0 0 30 2 *").next(START));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongFieldCount() {
+        new CronExpression("0 0 * * *");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void valueOutOfRange() {
+        new CronExpression("0 60 * * * *");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reversedRange() {
+        new CronExpression("0 0 10-8 * * *");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroStep() {
+        new CronExpression("*/0 * * * * *");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownName() {
+        new CronExpression("0 0 0 * FOO *");
+    }
+}